@@ -1,5 +1,6 @@
 package com.search.controller;
 
+import com.search.model.PageHit;
 import com.search.model.SearchResult;
 import com.search.service.DBConnector;
 import com.search.service.Storage;
@@ -109,19 +110,10 @@ public class DefaultController {
                          @RequestParam(required = false) int limit,
                          @RequestParam(required = false, name = "site") String siteUrl) throws IOException, SQLException {
 
-        List<SearchResult> searchResults = searchService.search(query);
+        List<PageHit> hits = searchService.search(query, siteUrl);
+        List<SearchResult> searchResults = searchService.getSearchResults(query, hits, offset, limit);
 
-        if (siteUrl != null) {
-            searchResults = searchService.filterBySite(searchResults, siteUrl);
-        }
-        if (offset != 0) {
-            searchResults = searchResults.subList(offset - 1, searchResults.size());
-        }
-        if(limit != 0 && searchResults.size() >= limit) {
-            searchResults = searchResults.subList(0, limit);
-        }
-
-        return searchService.toJSONObject(searchResults).toString();
+        return searchService.toJSONObject(searchResults, hits.size()).toString();
     }
 
 
@@ -6,6 +6,12 @@ public class Page {
     private int code;
     private String content;
     private int siteId;
+    private String title;
+    private String text;
+    private String etag;
+    private String lastModified;
+    private long contentHash;
+    private boolean stored;
 
     public Page(int id, String path, int code, String content, int siteId) {
         this.id = id;
@@ -54,4 +60,52 @@ public class Page {
     public int getSiteId() {
         return siteId;
     }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(String lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    public long getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(long contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public boolean isStored() {
+        return stored;
+    }
+
+    public void setStored(boolean stored) {
+        this.stored = stored;
+    }
 }
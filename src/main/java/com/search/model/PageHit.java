@@ -0,0 +1,25 @@
+package com.search.model;
+
+public class PageHit {
+    private int pageId;
+    private int siteId;
+    private float relevance;
+
+    public PageHit(int pageId, int siteId, float relevance) {
+        this.pageId = pageId;
+        this.siteId = siteId;
+        this.relevance = relevance;
+    }
+
+    public int getPageId() {
+        return pageId;
+    }
+
+    public int getSiteId() {
+        return siteId;
+    }
+
+    public float getRelevance() {
+        return relevance;
+    }
+}
@@ -0,0 +1,58 @@
+package com.search.model;
+
+public class PageState {
+    private int pageId;
+    private String path;
+    private String etag;
+    private String lastModified;
+    private long contentHash;
+    private int duplicateOf;
+
+    public PageState(int pageId, String path, String etag, String lastModified, long contentHash) {
+        this.pageId = pageId;
+        this.path = path;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.contentHash = contentHash;
+    }
+
+    public int getPageId() {
+        return pageId;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(String lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    public long getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(long contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public int getDuplicateOf() {
+        return duplicateOf;
+    }
+
+    public void setDuplicateOf(int duplicateOf) {
+        this.duplicateOf = duplicateOf;
+    }
+}
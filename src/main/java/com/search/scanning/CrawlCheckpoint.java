@@ -0,0 +1,91 @@
+package com.search.scanning;
+
+import com.search.model.Site;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Контрольная точка обхода: очередь ссылок и множество уже найденных адресов в одном локальном файле.
+ * Файл сначала пишется во временный, а заменяет прежний только после того, как данные страниц
+ * сохранены в базу (commit), поэтому точка всегда согласована с базой.
+ */
+public class CrawlCheckpoint {
+
+    private static final int MAGIC = 0x43524b31;
+
+    private final Path file;
+    private final Path temp;
+
+    public CrawlCheckpoint(Path directory) {
+        this.file = directory.resolve("crawl.checkpoint");
+        this.temp = directory.resolve("crawl.checkpoint.tmp");
+    }
+
+    public boolean exists() {
+        return Files.exists(file);
+    }
+
+    public void write(List<CrawlTask> tasks, SeenUrlSet seen) throws IOException {
+        Files.createDirectories(file.getParent());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(tasks.size());
+            for (CrawlTask task : tasks) {
+                out.writeInt(task.getSite().getId());
+                out.writeInt(task.getDepth());
+                out.writeLong(task.getPriority());
+                out.writeUTF(task.getUrl());
+            }
+            seen.writeTo(out);
+        }
+    }
+
+    public void commit() throws IOException {
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Загружает найденные адреса в seen и возвращает очередь. Задачи сайтов, которых больше нет, отбрасываются.
+     */
+    public List<CrawlTask> load(List<Site> sites, SeenUrlSet seen) throws IOException {
+        Map<Integer, Site> sitesById = new HashMap<>();
+        for (Site site : sites) {
+            sitesById.put(site.getId(), site);
+        }
+        List<CrawlTask> tasks = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Неизвестный формат файла " + file);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                int siteId = in.readInt();
+                int depth = in.readInt();
+                long priority = in.readLong();
+                String url = in.readUTF();
+                Site site = sitesById.get(siteId);
+                if (site != null) {
+                    tasks.add(new CrawlTask(url, depth, site, priority));
+                }
+            }
+            seen.readFrom(in);
+        }
+        return tasks;
+    }
+
+    public void delete() throws IOException {
+        Files.deleteIfExists(temp);
+        Files.deleteIfExists(file);
+    }
+}
@@ -0,0 +1,135 @@
+package com.search.scanning;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class CrawlStats {
+
+    private static final int MAX_LATENCY = 30_000;
+
+    private final long startTime = System.nanoTime();
+    private final Map<Integer, AtomicInteger> pagesBySite = new ConcurrentHashMap<>();
+    private final AtomicInteger unchangedPages = new AtomicInteger();
+    private final AtomicInteger canonicalDuplicates = new AtomicInteger();
+    private final AtomicInteger disallowedLinks = new AtomicInteger();
+    private final AtomicInteger retries = new AtomicInteger();
+    private final AtomicInteger failedPages = new AtomicInteger();
+    private final AtomicInteger notHtmlPages = new AtomicInteger();
+    private final AtomicInteger truncatedPages = new AtomicInteger();
+    private final AtomicLongArray latencies = new AtomicLongArray(MAX_LATENCY + 1);
+    private volatile long finishTime = 0;
+
+    public void pageFetched(int siteId) {
+        pagesBySite.computeIfAbsent(siteId, id -> new AtomicInteger()).incrementAndGet();
+    }
+
+    public void pageUnchanged() {
+        unchangedPages.incrementAndGet();
+    }
+
+    public int getUnchangedPages() {
+        return unchangedPages.get();
+    }
+
+    public void canonicalDuplicate() {
+        canonicalDuplicates.incrementAndGet();
+    }
+
+    public int getCanonicalDuplicates() {
+        return canonicalDuplicates.get();
+    }
+
+    public void linkDisallowed() {
+        disallowedLinks.incrementAndGet();
+    }
+
+    public int getDisallowedLinks() {
+        return disallowedLinks.get();
+    }
+
+    public void retried() {
+        retries.incrementAndGet();
+    }
+
+    public int getRetries() {
+        return retries.get();
+    }
+
+    public void pageFailed() {
+        failedPages.incrementAndGet();
+    }
+
+    public int getFailedPages() {
+        return failedPages.get();
+    }
+
+    public void pageNotHtml() {
+        notHtmlPages.incrementAndGet();
+    }
+
+    public int getNotHtmlPages() {
+        return notHtmlPages.get();
+    }
+
+    public void pageTruncated() {
+        truncatedPages.incrementAndGet();
+    }
+
+    public int getTruncatedPages() {
+        return truncatedPages.get();
+    }
+
+    public void fetchLatency(long millis) {
+        latencies.incrementAndGet((int) Math.max(0, Math.min(millis, MAX_LATENCY)));
+    }
+
+    /**
+     * Время загрузки страницы в миллисекундах, которое не превышают percentile процентов запросов.
+     */
+    public long getLatencyPercentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i <= MAX_LATENCY; i++) {
+            total += latencies.get(i);
+        }
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i <= MAX_LATENCY; i++) {
+            seen += latencies.get(i);
+            if (seen >= rank) return i;
+        }
+        return MAX_LATENCY;
+    }
+
+    public void finish() {
+        finishTime = System.nanoTime();
+    }
+
+    public int getPages(int siteId) {
+        AtomicInteger pages = pagesBySite.get(siteId);
+        return pages == null ? 0 : pages.get();
+    }
+
+    public int getTotalPages() {
+        int total = 0;
+        for (AtomicInteger pages : pagesBySite.values()) {
+            total += pages.get();
+        }
+        return total;
+    }
+
+    public double getElapsedSeconds() {
+        long end = finishTime == 0 ? System.nanoTime() : finishTime;
+        return (end - startTime) / 1_000_000_000.0;
+    }
+
+    public double getPagesPerSecond(int siteId) {
+        double seconds = getElapsedSeconds();
+        if (seconds <= 0) {
+            return 0;
+        }
+        return getPages(siteId) / seconds;
+    }
+}
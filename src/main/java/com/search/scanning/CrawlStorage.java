@@ -0,0 +1,34 @@
+package com.search.scanning;
+
+import com.search.model.Page;
+import com.search.model.PageState;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * То, что нужно Engine от хранилища: учет найденных адресов и прием загруженных страниц.
+ */
+public interface CrawlStorage {
+
+    boolean addUsedLink(String url);
+
+    SeenUrlSet getUsedLinks();
+
+    boolean isStop();
+
+    PageState getKnownPage(String path);
+
+    String loadPageContent(int pageId) throws SQLException;
+
+    void keepUnchangedPage(PageState state);
+
+    int increasePageIdAndGet();
+
+    boolean addPage(Page page) throws IOException, SQLException;
+
+    /**
+     * Записывает принятые страницы в базу для контрольной точки, не завершая индексацию.
+     */
+    void persist() throws IOException, SQLException;
+}
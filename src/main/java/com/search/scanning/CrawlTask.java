@@ -0,0 +1,81 @@
+package com.search.scanning;
+
+import com.search.model.Site;
+
+import java.util.Locale;
+
+public class CrawlTask {
+
+    private final String url;
+    private final int depth;
+    private final Site site;
+    private final String host;
+    private final long priority;
+    private final int attempt;
+    private long sequence;
+
+    public CrawlTask(String url, int depth, Site site) {
+        this(url, depth, site, 0);
+    }
+
+    public CrawlTask(String url, int depth, Site site, long priority) {
+        this(url, depth, site, priority, 0);
+    }
+
+    private CrawlTask(String url, int depth, Site site, long priority, int attempt) {
+        this.url = url;
+        this.depth = depth;
+        this.site = site;
+        this.host = hostOf(url, site);
+        this.priority = priority;
+        this.attempt = attempt;
+    }
+
+    public CrawlTask retry() {
+        return new CrawlTask(url, depth, site, priority, attempt + 1);
+    }
+
+    private static String hostOf(String url, Site site) {
+        int schemeEnd = url.indexOf("://");
+        if (schemeEnd < 0) {
+            return site.getUrl();
+        }
+        int hostEnd = schemeEnd + 3;
+        while (hostEnd < url.length() && "/?#".indexOf(url.charAt(hostEnd)) < 0) {
+            hostEnd++;
+        }
+        return url.substring(schemeEnd + 3, hostEnd).toLowerCase(Locale.ROOT);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public Site getSite() {
+        return site;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public long getPriority() {
+        return priority;
+    }
+
+    public int getAttempt() {
+        return attempt;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+}
@@ -0,0 +1,329 @@
+package com.search.scanning;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+@ConfigurationProperties(prefix = "crawler")
+public class CrawlerSettings {
+
+    private int workers = 8;
+    private int perHostConcurrency = 2;
+    private int maxHostConcurrency = 8;
+    private long targetLatency = 1000;
+    private long fetchTimeout = 5000;
+    private long connectTimeout = 5000;
+    private boolean http2 = true;
+    private long maxPageSize = 2 * 1024 * 1024;
+    private int maxRetries = 3;
+    private long retryBackoff = 1000;
+    private long crawlDelay = 100;
+    private FetchMode fetchMode = FetchMode.POOL;
+    private int maxInFlight = 1000;
+    private int maxInFlightPerHost = 50;
+    private boolean incremental = false;
+    private int seenExpectedUrls = 100_000;
+    private int duplicateDistance = 3;
+    private boolean respectRobots = true;
+    private boolean useSitemaps = true;
+    private int maxSitemapUrls = 50_000;
+    private int analyzeWorkers = 0;
+    private int analyzeQueueSize = 1000;
+    private int persistQueueSize = 1000;
+    private int persistBatchSize = 500;
+    private int morphologyCacheSize = 100_000;
+    private int writeChunkSize = 5000;
+    private int writeRetries = 3;
+    private long writeRetryBackoff = 500;
+    private boolean bulkLoad = false;
+    private String bulkLoadDir = "bulk-load";
+    private int bulkLoadChunkRows = 5_000_000;
+    private boolean resume = true;
+    private String checkpointDir = "checkpoint";
+    private long checkpointInterval = 60_000;
+    private List<String> trackingParams = new ArrayList<>(List.of(
+            "utm_*", "fbclid", "gclid", "yclid", "_openstat", "mc_cid", "mc_eid"));
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    public int getPerHostConcurrency() {
+        return perHostConcurrency;
+    }
+
+    public void setPerHostConcurrency(int perHostConcurrency) {
+        this.perHostConcurrency = perHostConcurrency;
+    }
+
+    public int getMaxHostConcurrency() {
+        return maxHostConcurrency;
+    }
+
+    public void setMaxHostConcurrency(int maxHostConcurrency) {
+        this.maxHostConcurrency = maxHostConcurrency;
+    }
+
+    public long getTargetLatency() {
+        return targetLatency;
+    }
+
+    public void setTargetLatency(long targetLatency) {
+        this.targetLatency = targetLatency;
+    }
+
+    public long getFetchTimeout() {
+        return fetchTimeout;
+    }
+
+    public void setFetchTimeout(long fetchTimeout) {
+        this.fetchTimeout = fetchTimeout;
+    }
+
+    public long getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(long connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    public void setHttp2(boolean http2) {
+        this.http2 = http2;
+    }
+
+    public long getMaxPageSize() {
+        return maxPageSize;
+    }
+
+    public void setMaxPageSize(long maxPageSize) {
+        this.maxPageSize = maxPageSize;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public long getRetryBackoff() {
+        return retryBackoff;
+    }
+
+    public void setRetryBackoff(long retryBackoff) {
+        this.retryBackoff = retryBackoff;
+    }
+
+    public long getCrawlDelay() {
+        return crawlDelay;
+    }
+
+    public void setCrawlDelay(long crawlDelay) {
+        this.crawlDelay = crawlDelay;
+    }
+
+    public FetchMode getFetchMode() {
+        return fetchMode;
+    }
+
+    public void setFetchMode(FetchMode fetchMode) {
+        this.fetchMode = fetchMode;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    public int getMaxInFlightPerHost() {
+        return maxInFlightPerHost;
+    }
+
+    public void setMaxInFlightPerHost(int maxInFlightPerHost) {
+        this.maxInFlightPerHost = maxInFlightPerHost;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public int getSeenExpectedUrls() {
+        return seenExpectedUrls;
+    }
+
+    public void setSeenExpectedUrls(int seenExpectedUrls) {
+        this.seenExpectedUrls = seenExpectedUrls;
+    }
+
+    public List<String> getTrackingParams() {
+        return trackingParams;
+    }
+
+    public void setTrackingParams(List<String> trackingParams) {
+        this.trackingParams = trackingParams;
+    }
+
+    public int getDuplicateDistance() {
+        return duplicateDistance;
+    }
+
+    public void setDuplicateDistance(int duplicateDistance) {
+        this.duplicateDistance = duplicateDistance;
+    }
+
+    public boolean isRespectRobots() {
+        return respectRobots;
+    }
+
+    public void setRespectRobots(boolean respectRobots) {
+        this.respectRobots = respectRobots;
+    }
+
+    public boolean isUseSitemaps() {
+        return useSitemaps;
+    }
+
+    public void setUseSitemaps(boolean useSitemaps) {
+        this.useSitemaps = useSitemaps;
+    }
+
+    public int getAnalyzeWorkers() {
+        return analyzeWorkers;
+    }
+
+    public void setAnalyzeWorkers(int analyzeWorkers) {
+        this.analyzeWorkers = analyzeWorkers;
+    }
+
+    public int getAnalyzeQueueSize() {
+        return analyzeQueueSize;
+    }
+
+    public void setAnalyzeQueueSize(int analyzeQueueSize) {
+        this.analyzeQueueSize = analyzeQueueSize;
+    }
+
+    public int getPersistQueueSize() {
+        return persistQueueSize;
+    }
+
+    public void setPersistQueueSize(int persistQueueSize) {
+        this.persistQueueSize = persistQueueSize;
+    }
+
+    public int getPersistBatchSize() {
+        return persistBatchSize;
+    }
+
+    public void setPersistBatchSize(int persistBatchSize) {
+        this.persistBatchSize = persistBatchSize;
+    }
+
+    public int getMorphologyCacheSize() {
+        return morphologyCacheSize;
+    }
+
+    public void setMorphologyCacheSize(int morphologyCacheSize) {
+        this.morphologyCacheSize = morphologyCacheSize;
+    }
+
+    public int getWriteChunkSize() {
+        return writeChunkSize;
+    }
+
+    public void setWriteChunkSize(int writeChunkSize) {
+        this.writeChunkSize = writeChunkSize;
+    }
+
+    public int getWriteRetries() {
+        return writeRetries;
+    }
+
+    public void setWriteRetries(int writeRetries) {
+        this.writeRetries = writeRetries;
+    }
+
+    public long getWriteRetryBackoff() {
+        return writeRetryBackoff;
+    }
+
+    public void setWriteRetryBackoff(long writeRetryBackoff) {
+        this.writeRetryBackoff = writeRetryBackoff;
+    }
+
+    public boolean isBulkLoad() {
+        return bulkLoad;
+    }
+
+    public void setBulkLoad(boolean bulkLoad) {
+        this.bulkLoad = bulkLoad;
+    }
+
+    public String getBulkLoadDir() {
+        return bulkLoadDir;
+    }
+
+    public void setBulkLoadDir(String bulkLoadDir) {
+        this.bulkLoadDir = bulkLoadDir;
+    }
+
+    public int getBulkLoadChunkRows() {
+        return bulkLoadChunkRows;
+    }
+
+    public void setBulkLoadChunkRows(int bulkLoadChunkRows) {
+        this.bulkLoadChunkRows = bulkLoadChunkRows;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    public String getCheckpointDir() {
+        return checkpointDir;
+    }
+
+    public void setCheckpointDir(String checkpointDir) {
+        this.checkpointDir = checkpointDir;
+    }
+
+    public long getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    public void setCheckpointInterval(long checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    public int getMaxSitemapUrls() {
+        return maxSitemapUrls;
+    }
+
+    public void setMaxSitemapUrls(int maxSitemapUrls) {
+        this.maxSitemapUrls = maxSitemapUrls;
+    }
+}
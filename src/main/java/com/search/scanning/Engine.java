@@ -1,109 +1,358 @@
 package com.search.scanning;
 
+import com.search.model.Page;
+import com.search.model.PageState;
 import com.search.model.Site;
-import com.search.service.Storage;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
 import java.sql.SQLException;
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.RecursiveAction;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-public class Engine extends RecursiveAction {
+public class Engine {
 
-    private String rootUrl;
-    private List<PageReader> childrens = new ArrayList<>();
-    private PageReader pageReader;
-    private Site site;
-    private final Storage storage;
+    private final List<Site> sites;
+    private final CrawlStorage storage;
+    private final CrawlerSettings settings;
+    private final Frontier frontier;
+    private final HostRateController rateController;
+    private final Map<Integer, String> siteHosts = new HashMap<>();
+    private final CrawlStats stats = new CrawlStats();
+    private final Map<Integer, UrlCanonicalizer> canonicalizers = new HashMap<>();
+    private final Map<Integer, RobotsRules> robots = new HashMap<>();
+    private final FetchClient fetchClient;
+    private final RobotsCache robotsCache;
+    private final CrawlCheckpoint checkpoint;
+    private final ReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+    private List<CrawlTask> resumedTasks = List.of();
+    private ScheduledExecutorService checkpointTimer;
+    private ExecutorService workers;
+    private FetchExecutor fetchExecutor;
     private final Logger logger = LogManager.getRootLogger();
 
-    public Engine(Storage storage) {
+    public Engine(List<Site> sites, CrawlStorage storage, CrawlerSettings settings, CrawlCheckpoint checkpoint,
+                  FetchClient fetchClient) {
+        this.sites = sites;
         this.storage = storage;
+        this.settings = settings;
+        this.checkpoint = checkpoint;
+        this.fetchClient = fetchClient;
+        this.robotsCache = new RobotsCache(fetchClient);
+        this.rateController = new HostRateController(settings);
+        this.frontier = new Frontier(rateController, settings.getCrawlDelay());
+        for (Site site : sites) {
+            UrlCanonicalizer canonicalizer = new UrlCanonicalizer(site.getUrl(), settings.getTrackingParams());
+            canonicalizers.put(site.getId(), canonicalizer);
+            siteHosts.put(site.getId(), new CrawlTask(canonicalizer.getRoot(), 0, site).getHost());
+        }
     }
 
-    public Engine(String rootUrl, Site site, Storage storage) {
-        this.rootUrl = rootUrl;
-        this.site = site;
-        this.storage = storage;
-        this.pageReader = new PageReader(rootUrl, site, storage);
+    public void crawl() throws InterruptedException {
+        for (Site site : sites) {
+            UrlCanonicalizer canonicalizer = canonicalizers.get(site.getId());
+            String rootUrl = canonicalizer.canonicalize(site.getUrl());
+            if (rootUrl == null) {
+                rootUrl = site.getUrl();
+            }
+            RobotsRules rules = settings.isRespectRobots()
+                    ? robotsCache.get(canonicalizer.getRoot())
+                    : RobotsRules.allowAll();
+            robots.put(site.getId(), rules);
+            CrawlTask rootTask = new CrawlTask(rootUrl, 0, site);
+            if (rules.getCrawlDelay() > 0) {
+                frontier.setHostCrawlDelay(rootTask.getHost(), rules.getCrawlDelay());
+            }
+            if (!resumedTasks.isEmpty()) continue;
+            storage.addUsedLink(rootUrl);
+            frontier.add(rootTask);
+            if (settings.isUseSitemaps()) {
+                seedFromSitemaps(site, canonicalizer, rules);
+            }
+        }
+        for (CrawlTask task : resumedTasks) {
+            storage.addUsedLink(task.getUrl());
+            frontier.add(task);
+        }
+        startCheckpointTimer();
+        try {
+            if (settings.getFetchMode() == FetchMode.VIRTUAL && FetchExecutor.isSupported()) {
+                dispatch();
+            } else {
+                if (settings.getFetchMode() == FetchMode.VIRTUAL) {
+                    logger.warn("Виртуальные потоки доступны с Java 21, обход идет пулом из " + settings.getWorkers() + " потоков");
+                }
+                runWorkers();
+            }
+        } finally {
+            if (checkpointTimer != null) {
+                checkpointTimer.shutdownNow();
+            }
+        }
+        stats.finish();
+        for (Site site : sites) {
+            logger.info(String.format("Сайт %s: %d страниц, %.2f стр/с",
+                    site.getUrl(), stats.getPages(site.getId()), stats.getPagesPerSecond(site.getId())));
+        }
+        for (Site site : sites) {
+            String host = siteHosts.get(site.getId());
+            logger.info(String.format("Хост %s: лимит %d одновременных запросов, время ответа %d мс, снижений лимита %d",
+                    host, rateController.getLimit(host), rateController.getLatency(host), rateController.getDecreases(host)));
+        }
+        logger.info("Повторных запросов: " + stats.getRetries() + ", страниц с ошибкой после всех попыток: " + stats.getFailedPages());
+        logger.info("Пропущено ресурсов не в HTML: " + stats.getNotHtmlPages()
+                + ", страниц, обрезанных по размеру: " + stats.getTruncatedPages());
+        logger.info("Пропущено страниц-дублей по канонической ссылке: " + stats.getCanonicalDuplicates());
+        logger.info("Пропущено ссылок, запрещенных robots.txt: " + stats.getDisallowedLinks());
+        if (settings.isIncremental()) {
+            logger.info("Страниц без изменений: " + stats.getUnchangedPages());
+        }
     }
 
-    public Engine(Site site, Storage storage) {
-        this.rootUrl = site.getUrl();
-        this.site = site;
-        this.pageReader = new PageReader(rootUrl, site, storage);
-        this.storage = storage;
+    private void seedFromSitemaps(Site site, UrlCanonicalizer canonicalizer, RobotsRules rules) {
+        List<String> sitemaps = rules.getSitemaps().isEmpty()
+                ? List.of(canonicalizer.getRoot() + "/sitemap.xml")
+                : rules.getSitemaps();
+        int seeded = 0;
+        for (SitemapReader.Entry entry : new SitemapReader(fetchClient, settings.getMaxSitemapUrls()).read(sitemaps)) {
+            String url = canonicalizer.canonicalize(entry.getUrl());
+            if (url == null || url.length() > 190) continue;
+            if (!rules.isAllowed(url)) {
+                stats.linkDisallowed();
+                continue;
+            }
+            if (storage.addUsedLink(url)) {
+                frontier.add(new CrawlTask(url, 1, site, entry.getLastModified()));
+                seeded++;
+            }
+        }
+        logger.info("Из карты сайта " + site.getUrl() + " добавлено адресов: " + seeded);
     }
 
-    @Override
-    protected void compute() {
-        if (storage.isStop()) return;
+    private void startCheckpointTimer() {
+        long interval = settings.getCheckpointInterval();
+        if (!settings.isResume() || interval <= 0) return;
+        checkpointTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "crawl-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkpointTimer.scheduleWithFixedDelay(this::checkpoint, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Сохраняет очередь и найденные адреса. Снимок делается, пока ни один поток не разбирает загруженную страницу,
+     * затем накопленные страницы сохраняются в базу, и только после этого файл точки заменяется.
+     */
+    public void checkpoint() {
         try {
-            childrens = pageReader.getChildrens();
+            int queued;
+            checkpointLock.writeLock().lock();
+            try {
+                List<CrawlTask> tasks = frontier.snapshot();
+                queued = tasks.size();
+                checkpoint.write(tasks, storage.getUsedLinks());
+            } finally {
+                checkpointLock.writeLock().unlock();
+            }
+            storage.persist();
+            checkpoint.commit();
+            logger.info("Сохранена контрольная точка обхода, ссылок в очереди: " + queued);
         } catch (IOException | SQLException ex) {
-            logger.trace(ex.getMessage());
+            logger.warn("Не удалось сохранить контрольную точку обхода: " + ex.getMessage());
         }
-        if (childrens.size() == 0) {
-            return;
-        }
-        storage.addUsedLinks(childrens.stream().map(PageReader::getUrl).collect(Collectors.toSet()));
+    }
 
-        try {
-            createPagesAndCollect();
-        } catch (InterruptedException | IOException | SQLException e) {
-            logger.trace(e.getMessage());
-        }
+    public void setResumedTasks(List<CrawlTask> resumedTasks) {
+        this.resumedTasks = resumedTasks;
+    }
 
-        for (PageReader children : childrens) {
-            Engine task = new Engine(children.getUrl(), site, storage);
-            task.fork();
-            task.join();
+    public void stop() {
+        frontier.close();
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+        if (fetchExecutor != null) {
+            fetchExecutor.shutdownNow();
         }
     }
 
-    public void createPagesAndCollect() throws InterruptedException, IOException, SQLException {
-        if (storage.isStop()) return;
-        if (childrens.size() / 8 > 1) {
-            List<PageReader> part1 = childrens.subList(0, (childrens.size()) / 4);
-            List<PageReader> part2 = childrens.subList(part1.size() + 1, (childrens.size()) / 2);
-            List<PageReader> part3 = childrens.subList(part1.size() + part2.size() + 1, (childrens.size()) / 4 * 3);
-            List<PageReader> part4 = childrens.subList(part1.size() + part2.size() + part3.size() + 1, childrens.size());
+    private void runWorkers() throws InterruptedException {
+        AtomicInteger threadNumber = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(settings.getWorkers(),
+                r -> new Thread(r, "crawler-" + threadNumber.incrementAndGet()));
+        for (int i = 0; i < settings.getWorkers(); i++) {
+            workers.execute(this::work);
+        }
+        workers.shutdown();
+        workers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+    }
 
-            ChildrensRunner childrensRunner1 = new ChildrensRunner(part1, site, storage);
-            ChildrensRunner childrensRunner2 = new ChildrensRunner(part2, site, storage);
-            ChildrensRunner childrensRunner3 = new ChildrensRunner(part3, site, storage);
-            ChildrensRunner childrensRunner4 = new ChildrensRunner(part4, site, storage);
+    private void dispatch() throws InterruptedException {
+        fetchExecutor = new FetchExecutor(settings.getMaxInFlight(), settings.getMaxInFlightPerHost());
+        CrawlTask task;
+        while (!storage.isStop() && (task = frontier.take()) != null) {
+            CrawlTask current = task;
+            boolean submitted;
+            try {
+                submitted = fetchExecutor.submit(current, () -> processQuietly(current), () -> frontier.complete(current));
+            } catch (RejectedExecutionException ex) {
+                frontier.complete(current);
+                break;
+            } catch (InterruptedException ex) {
+                frontier.requeue(current, false);
+                throw ex;
+            }
+            if (!submitted) {
+                frontier.requeue(current, true);
+            }
+        }
+        fetchExecutor.shutdownAndWait();
+    }
 
-            List<ChildrensRunner> childrensRunnerList = new ArrayList<>();
+    private void work() {
+        try {
+            CrawlTask task;
+            while (!storage.isStop() && (task = frontier.take()) != null) {
+                processAndComplete(task);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
-            childrensRunnerList.add(childrensRunner1);
-            childrensRunnerList.add(childrensRunner2);
-            childrensRunnerList.add(childrensRunner3);
-            childrensRunnerList.add(childrensRunner4);
+    private void processAndComplete(CrawlTask task) {
+        try {
+            processQuietly(task);
+        } finally {
+            frontier.complete(task);
+        }
+    }
 
+    private void processQuietly(CrawlTask task) {
+        try {
+            process(task);
+        } catch (IOException | SQLException | RuntimeException ex) {
+            logger.trace(ex.getMessage());
+        }
+    }
 
-            for (ChildrensRunner childrensRunner : childrensRunnerList) {
-                childrensRunner.start();
-            }
+    private void process(CrawlTask task) throws IOException, SQLException {
+        PageReader pageReader = new PageReader(task.getUrl(), fetchClient);
+        pageReader.setTimeout(rateController.getTimeout(task.getHost()));
+        pageReader.setMaxBodySize(settings.getMaxPageSize());
+        boolean useKnownPages = settings.isIncremental() || !resumedTasks.isEmpty();
+        PageState known = useKnownPages ? storage.getKnownPage(task.getUrl()) : null;
+        long start = System.currentTimeMillis();
+        ParsedPage parsedPage = pageReader.read(known);
+        long latency = System.currentTimeMillis() - start;
+        stats.fetchLatency(latency);
+        checkpointLock.readLock().lock();
+        try {
+            handle(task, pageReader, known, parsedPage, latency);
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+    }
 
-            for (ChildrensRunner childrensRunner : childrensRunnerList) {
-                childrensRunner.join();
+    private void handle(CrawlTask task, PageReader pageReader, PageState known, ParsedPage parsedPage, long latency)
+            throws IOException, SQLException {
+        Site site = task.getSite();
+        if (storage.isStop()) {
+            frontier.add(task);
+            return;
+        }
+        if (parsedPage.isOverload()) {
+            long pause = rateController.onOverload(task.getHost(), task.getAttempt(), parsedPage.getRetryAfter());
+            if (task.getAttempt() < settings.getMaxRetries()) {
+                logger.debug("Хост " + task.getHost() + " перегружен (код " + parsedPage.getCode() + "), повтор "
+                        + task.getUrl() + " через " + pause + " мс");
+                stats.retried();
+                frontier.add(task.retry());
+                return;
             }
-
+            stats.pageFailed();
         } else {
-            ChildrensRunner childrensRunner = new ChildrensRunner(childrens, site, storage);
-            childrensRunner.run();
-            storage.addPages(childrensRunner.getPageList());
-            childrensRunner.clear();
+            rateController.onSuccess(task.getHost(), latency);
+        }
+        if (parsedPage.isNotHtml()) {
+            stats.pageNotHtml();
+            return;
+        }
+        if (parsedPage.isTruncated()) {
+            stats.pageTruncated();
+            logger.debug("Страница " + task.getUrl() + " больше " + settings.getMaxPageSize() + " байт, прочитано только начало");
+        }
+        stats.pageFetched(site.getId());
+        UrlCanonicalizer canonicalizer = canonicalizers.get(site.getId());
+        String canonicalUrl = canonicalizer.canonicalize(parsedPage.getCanonicalUrl());
+        if (canonicalUrl != null && !canonicalUrl.equals(task.getUrl()) && !storage.addUsedLink(canonicalUrl)) {
+            stats.canonicalDuplicate();
+            return;
+        }
+        List<String> links;
+        if (parsedPage.isNotModified() && known != null) {
+            stats.pageUnchanged();
+            links = pageReader.readStoredLinks(storage.loadPageContent(known.getPageId()));
+        } else if (known != null && known.getContentHash() == parsedPage.getContentHash()) {
+            stats.pageUnchanged();
+            known.setEtag(parsedPage.getEtag());
+            known.setLastModified(parsedPage.getLastModified());
+            storage.keepUnchangedPage(known);
+            links = parsedPage.getLinks();
+        } else {
+            int id = known != null ? known.getPageId() : storage.increasePageIdAndGet();
+            Page page = new Page(id, task.getUrl(), parsedPage.getCode(), parsedPage.getContent(), site.getId());
+            page.setTitle(parsedPage.getTitle());
+            page.setText(parsedPage.getText());
+            page.setEtag(parsedPage.getEtag());
+            page.setLastModified(parsedPage.getLastModified());
+            page.setContentHash(parsedPage.getContentHash());
+            page.setStored(known != null);
+            logger.debug("Страница: " + page.getPath() + " сайт " + site.getUrl());
+            if (!storage.addPage(page)) {
+                frontier.add(task);
+                return;
+            }
+            links = parsedPage.getLinks();
         }
+        RobotsRules rules = robots.get(site.getId());
+        for (String link : pageReader.filterChildren(links, canonicalizer)) {
+            if (!rules.isAllowed(link)) {
+                stats.linkDisallowed();
+                continue;
+            }
+            if (storage.addUsedLink(link)) {
+                frontier.add(new CrawlTask(link, task.getDepth() + 1, site));
+            }
+        }
+    }
+
+    public CrawlStats getStats() {
+        return stats;
+    }
+
+    public int getHostLimit(int siteId) {
+        String host = siteHosts.get(siteId);
+        return host == null ? 0 : rateController.getLimit(host);
     }
 
-    public String getRootUrl() {
-        return rootUrl;
+    public long getHostLatency(int siteId) {
+        String host = siteHosts.get(siteId);
+        return host == null ? 0 : rateController.getLatency(host);
     }
 
+    public int getQueueSize() {
+        return frontier.size();
+    }
 }
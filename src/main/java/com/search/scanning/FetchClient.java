@@ -0,0 +1,235 @@
+package com.search.scanning;
+
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Общий HTTP-клиент обхода: один java.net.http.HttpClient на все загрузки, поэтому соединения с хостом
+ * (и TLS-сессии) переиспользуются, по возможности используется HTTP/2, ответы запрашиваются сжатыми gzip.
+ * Тело читается потоком: ответ с неподходящим Content-Type не дочитывается, а чтение прекращается
+ * после заданного числа байт (после распаковки). Тайм-аут ограничивает весь обмен, а не только ожидание
+ * заголовков: если тело не дочитано к сроку, поток ответа закрывается и загрузка считается тайм-аутом.
+ */
+@Component
+public class FetchClient {
+
+    private static final String HEX = "0123456789ABCDEF";
+    private static final ScheduledExecutorService DEADLINES = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "fetch-deadline");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final HttpClient client;
+
+    public FetchClient(CrawlerSettings settings) {
+        this.client = HttpClient.newBuilder()
+                .version(settings.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(Math.max(1, settings.getConnectTimeout())))
+                .build();
+    }
+
+    public Response get(String url, Map<String, String> headers, long timeout, long maxBytes)
+            throws IOException, InterruptedException {
+        return get(url, headers, timeout, maxBytes, contentType -> true);
+    }
+
+    public Response get(String url, Map<String, String> headers, long timeout, long maxBytes,
+                        Predicate<String> acceptContentType) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(1, timeout));
+        HttpRequest.Builder request = HttpRequest.newBuilder(toUri(url))
+                .timeout(Duration.ofMillis(Math.max(1, timeout)))
+                .header("User-Agent", PageReader.USER_AGENT)
+                .header("Accept-Encoding", "gzip, deflate")
+                .GET();
+        headers.forEach(request::header);
+        HttpResponse<InputStream> response = client.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        Response result = new Response(response.statusCode(), response.uri().toString(), response.headers());
+        if (!acceptContentType.test(result.getContentType())) {
+            response.body().close();
+            result.skipped = true;
+            return result;
+        }
+        // заблокированное чтение прерывается закрытием потока: сервер может перестать присылать байты совсем
+        AtomicBoolean expired = new AtomicBoolean();
+        ScheduledFuture<?> closer = DEADLINES.schedule(() -> {
+            expired.set(true);
+            closeQuietly(response.body());
+        }, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        try (InputStream body = decode(response.headers(), response.body())) {
+            read(body, maxBytes, deadline, result);
+        } catch (IOException ex) {
+            if (expired.get()) throw timeout(url, timeout);
+            throw ex;
+        } finally {
+            closer.cancel(false);
+        }
+        if (expired.get()) throw timeout(url, timeout);
+        return result;
+    }
+
+    private static InputStream decode(HttpHeaders headers, InputStream body) throws IOException {
+        String encoding = headers.firstValue("Content-Encoding").orElse("").toLowerCase(Locale.ROOT);
+        if (encoding.contains("gzip")) {
+            return new GZIPInputStream(body);
+        }
+        if (encoding.contains("deflate")) {
+            return new InflaterInputStream(body);
+        }
+        return body;
+    }
+
+    /**
+     * Читает не больше maxBytes байт тела; после срока deadline (System.nanoTime) бросает HttpTimeoutException.
+     */
+    static void read(InputStream in, long maxBytes, long deadline, Response result) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+        byte[] buffer = new byte[8192];
+        long remaining = maxBytes > 0 ? maxBytes : Long.MAX_VALUE;
+        int read;
+        while (remaining > 0 && (read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+            if (System.nanoTime() - deadline > 0) {
+                throw new HttpTimeoutException("Тело ответа не получено к сроку");
+            }
+            out.write(buffer, 0, read);
+            remaining -= read;
+        }
+        result.body = out.toByteArray();
+        result.truncated = remaining == 0 && in.read() != -1;
+    }
+
+    private static HttpTimeoutException timeout(String url, long timeout) {
+        return new HttpTimeoutException("Ответ " + url + " не получен за " + timeout + " мс");
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Ссылки со страниц могут содержать пробелы и кириллицу - такие символы кодируются, уже закодированные остаются как есть.
+     */
+    static URI toUri(String url) {
+        StringBuilder encoded = null;
+        for (int i = 0; i < url.length(); i++) {
+            char c = url.charAt(i);
+            boolean illegal = c > 126 || c <= ' ' || "\"<>\\^`{|}".indexOf(c) >= 0;
+            if (!illegal) {
+                if (encoded != null) encoded.append(c);
+                continue;
+            }
+            if (encoded == null) {
+                encoded = new StringBuilder(url.length() + 16).append(url, 0, i);
+            }
+            int end = Character.isHighSurrogate(c) && i + 1 < url.length() ? i + 2 : i + 1;
+            for (byte b : url.substring(i, end).getBytes(StandardCharsets.UTF_8)) {
+                encoded.append('%').append(HEX.charAt((b >> 4) & 0xF)).append(HEX.charAt(b & 0xF));
+            }
+            i = end - 1;
+        }
+        return URI.create(encoded == null ? url : encoded.toString());
+    }
+
+    public static class Response {
+        private final int status;
+        private final String url;
+        private final HttpHeaders headers;
+        private byte[] body = new byte[0];
+        private boolean truncated = false;
+        private boolean skipped = false;
+
+        Response(int status, String url, HttpHeaders headers) {
+            this.status = status;
+            this.url = url;
+            this.headers = headers;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getHeader(String name) {
+            return headers.firstValue(name).orElse(null);
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * Тело длиннее допустимого, прочитано только начало.
+         */
+        public boolean isTruncated() {
+            return truncated;
+        }
+
+        /**
+         * Content-Type не подошел, тело не читалось.
+         */
+        public boolean isSkipped() {
+            return skipped;
+        }
+
+        public String getContentType() {
+            String contentType = getHeader("Content-Type");
+            if (contentType == null) return null;
+            int semicolon = contentType.indexOf(';');
+            return (semicolon < 0 ? contentType : contentType.substring(0, semicolon)).trim().toLowerCase(Locale.ROOT);
+        }
+
+        /**
+         * Кодировка из Content-Type или null - тогда Jsoup определит ее по meta и BOM.
+         */
+        public String getCharset() {
+            String contentType = getHeader("Content-Type");
+            if (contentType == null) return null;
+            int start = contentType.toLowerCase(Locale.ROOT).indexOf("charset=");
+            if (start < 0) return null;
+            String charset = contentType.substring(start + "charset=".length()).trim();
+            int end = charset.indexOf(';');
+            if (end >= 0) charset = charset.substring(0, end);
+            charset = charset.replace("\"", "").replace("'", "").trim();
+            try {
+                return Charset.isSupported(charset) ? charset : null;
+            } catch (IllegalCharsetNameException ex) {
+                return null;
+            }
+        }
+
+        public String getBodyAsString() {
+            String charset = getCharset();
+            return new String(body, charset == null ? StandardCharsets.UTF_8 : Charset.forName(charset));
+        }
+    }
+}
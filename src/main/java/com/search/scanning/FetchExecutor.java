@@ -0,0 +1,93 @@
+package com.search.scanning;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выполняет загрузку каждой страницы в отдельном виртуальном потоке.
+ * Число одновременных запросов ограничено глобально и для каждого хоста.
+ * Виртуальные потоки есть только с Java 21, проект собирается под Java 17, поэтому фабрика ищется
+ * через reflection; на более старой Java режим недоступен (isSupported) и Engine обходит пулом потоков.
+ */
+public class FetchExecutor {
+
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+    private final int maxInFlightPerHost;
+    private final Map<String, Semaphore> inFlightByHost = new ConcurrentHashMap<>();
+
+    public FetchExecutor(int maxInFlight, int maxInFlightPerHost) {
+        this.executor = newVirtualThreadExecutor();
+        this.inFlight = new Semaphore(Math.max(1, maxInFlight));
+        this.maxInFlightPerHost = Math.max(1, maxInFlightPerHost);
+    }
+
+    public static boolean isSupported() {
+        return virtualThreadFactory() != null;
+    }
+
+    /**
+     * Запускает загрузку. Ждет только глобального лимита; если занят лимит хоста, задача не запускается
+     * и возвращается false, чтобы один перегруженный хост не задерживал выдачу задач остальных.
+     * done выполняется после загрузки, когда разрешения уже возвращены.
+     */
+    public boolean submit(CrawlTask task, Runnable fetch, Runnable done) throws InterruptedException {
+        Semaphore hostInFlight = inFlightByHost.computeIfAbsent(task.getHost(), h -> new Semaphore(maxInFlightPerHost));
+        inFlight.acquire();
+        if (!hostInFlight.tryAcquire()) {
+            inFlight.release();
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    fetch.run();
+                } finally {
+                    hostInFlight.release();
+                    inFlight.release();
+                    done.run();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            hostInFlight.release();
+            inFlight.release();
+            throw ex;
+        }
+        return true;
+    }
+
+    public void shutdownAndWait() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+    }
+
+    public void shutdownNow() {
+        executor.shutdownNow();
+    }
+
+    private static Method virtualThreadFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException ex) {
+            return null;
+        }
+    }
+
+    private ExecutorService newVirtualThreadExecutor() {
+        Method factory = virtualThreadFactory();
+        if (factory == null) {
+            throw new IllegalStateException("Виртуальные потоки недоступны в Java " + Runtime.version().feature());
+        }
+        try {
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Не удалось создать исполнитель на виртуальных потоках", ex);
+        }
+    }
+}
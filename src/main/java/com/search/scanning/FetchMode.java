@@ -0,0 +1,5 @@
+package com.search.scanning;
+
+public enum FetchMode {
+    POOL, VIRTUAL
+}
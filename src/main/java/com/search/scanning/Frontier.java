@@ -0,0 +1,160 @@
+package com.search.scanning;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Очередь ссылок на обход. Для каждого хоста своя очередь с приоритетом по глубине (обход в ширину),
+ * выдача задач учитывает текущий лимит одновременных запросов к хосту, паузу после перегрузки и задержку между запросами.
+ */
+public class Frontier {
+
+    private static final Comparator<CrawlTask> ORDER = Comparator
+            .comparingInt(CrawlTask::getDepth)
+            .thenComparing(Comparator.comparingLong(CrawlTask::getPriority).reversed())
+            .thenComparingLong(CrawlTask::getSequence);
+
+    private final Map<String, HostQueue> hosts = new HashMap<>();
+    private final List<HostQueue> rotation = new ArrayList<>();
+    private final Set<CrawlTask> inFlight = new HashSet<>();
+    private final HostRateController rateController;
+    private final long crawlDelay;
+    private long sequence = 0;
+    private int next = 0;
+    private int pending = 0;
+    private boolean closed = false;
+
+    public Frontier(HostRateController rateController, long crawlDelay) {
+        this.rateController = rateController;
+        this.crawlDelay = Math.max(0, crawlDelay);
+    }
+
+    public synchronized void add(CrawlTask task) {
+        task.setSequence(sequence++);
+        hostQueue(task.getHost()).queue.add(task);
+        pending++;
+        notifyAll();
+    }
+
+    /**
+     * Возвращает следующую задачу, ожидая, пока какой-нибудь хост не станет доступен.
+     * Возвращает null, когда обход завершен: очереди пусты и нет задач в работе.
+     */
+    public synchronized CrawlTask take() throws InterruptedException {
+        while (true) {
+            if (closed || pending == 0) {
+                return null;
+            }
+            long now = System.currentTimeMillis();
+            long wait = Long.MAX_VALUE;
+            for (int i = 0; i < rotation.size(); i++) {
+                HostQueue hostQueue = rotation.get((next + i) % rotation.size());
+                if (hostQueue.queue.isEmpty() || hostQueue.blocked
+                        || hostQueue.inFlight >= rateController.getLimit(hostQueue.host)) continue;
+                long readyAt = Math.max(hostQueue.lastStart + hostQueue.crawlDelay,
+                        rateController.getPausedUntil(hostQueue.host));
+                if (readyAt > now) {
+                    wait = Math.min(wait, readyAt - now);
+                    continue;
+                }
+                next = (next + i + 1) % rotation.size();
+                hostQueue.inFlight++;
+                hostQueue.lastStart = now;
+                CrawlTask task = hostQueue.queue.poll();
+                inFlight.add(task);
+                return task;
+            }
+            if (wait == Long.MAX_VALUE) {
+                wait();
+            } else {
+                wait(wait);
+            }
+        }
+    }
+
+    public synchronized void setHostCrawlDelay(String host, long hostCrawlDelay) {
+        hostQueue(host).crawlDelay = Math.max(crawlDelay, hostCrawlDelay);
+    }
+
+    private HostQueue hostQueue(String host) {
+        HostQueue hostQueue = hosts.get(host);
+        if (hostQueue == null) {
+            hostQueue = new HostQueue(host, crawlDelay);
+            hosts.put(host, hostQueue);
+            rotation.add(hostQueue);
+        }
+        return hostQueue;
+    }
+
+    /**
+     * Возвращает выданную, но не начатую задачу в очередь. waitForHost - хост сейчас не принимает запросов,
+     * его задачи не выдаются, пока не завершится одна из уже начатых.
+     */
+    public synchronized void requeue(CrawlTask task, boolean waitForHost) {
+        HostQueue hostQueue = hosts.get(task.getHost());
+        hostQueue.inFlight--;
+        hostQueue.blocked = waitForHost && hostQueue.inFlight > 0;
+        inFlight.remove(task);
+        hostQueue.queue.add(task);
+        notifyAll();
+    }
+
+    public synchronized void complete(CrawlTask task) {
+        HostQueue hostQueue = hosts.get(task.getHost());
+        hostQueue.inFlight--;
+        hostQueue.blocked = false;
+        inFlight.remove(task);
+        pending--;
+        notifyAll();
+    }
+
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    /**
+     * Задачи в очереди и в работе - все, что нужно обойти заново после перезапуска.
+     */
+    public synchronized List<CrawlTask> snapshot() {
+        Map<String, CrawlTask> tasks = new LinkedHashMap<>();
+        for (CrawlTask task : inFlight) {
+            tasks.putIfAbsent(task.getUrl(), task);
+        }
+        for (HostQueue hostQueue : rotation) {
+            for (CrawlTask task : hostQueue.queue) {
+                tasks.putIfAbsent(task.getUrl(), task);
+            }
+        }
+        return new ArrayList<>(tasks.values());
+    }
+
+    public synchronized int size() {
+        int size = 0;
+        for (HostQueue hostQueue : rotation) {
+            size += hostQueue.queue.size();
+        }
+        return size;
+    }
+
+    private static class HostQueue {
+        private final String host;
+        private final PriorityQueue<CrawlTask> queue = new PriorityQueue<>(ORDER);
+        private int inFlight = 0;
+        private boolean blocked = false;
+        private long lastStart = 0;
+        private long crawlDelay;
+
+        HostQueue(String host, long crawlDelay) {
+            this.host = host;
+            this.crawlDelay = crawlDelay;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.search.scanning;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Подбирает допустимое число одновременных запросов к каждому хосту по схеме AIMD:
+ * пока ответы приходят быстрее целевого времени, лимит растет на единицу за "окно" запросов,
+ * при медленных ответах, таймаутах, 429 и 5xx - уменьшается вдвое, а хост ставится на паузу
+ * (на время из Retry-After, если сервер его прислал).
+ */
+public class HostRateController {
+
+    private static final double DECREASE = 0.5;
+    private static final double SLOW_DECREASE = 0.8;
+    private static final double LATENCY_WEIGHT = 0.2;
+    private static final long MIN_TIMEOUT = 2000;
+    private static final long MAX_BACKOFF = 60_000;
+    private static final long MAX_RETRY_AFTER = 600_000;
+
+    private final int initialLimit;
+    private final int maxLimit;
+    private final long targetLatency;
+    private final long maxTimeout;
+    private final long retryBackoff;
+    private final Map<String, HostState> hosts = new ConcurrentHashMap<>();
+
+    public HostRateController(CrawlerSettings settings) {
+        this.maxLimit = Math.max(1, settings.getMaxHostConcurrency());
+        this.initialLimit = Math.max(1, Math.min(settings.getPerHostConcurrency(), maxLimit));
+        this.targetLatency = Math.max(1, settings.getTargetLatency());
+        this.maxTimeout = Math.max(MIN_TIMEOUT, settings.getFetchTimeout());
+        this.retryBackoff = Math.max(0, settings.getRetryBackoff());
+    }
+
+    public void onSuccess(String host, long latency) {
+        HostState state = state(host);
+        synchronized (state) {
+            state.updateLatency(latency);
+            if (latency > targetLatency) {
+                state.limit = Math.max(1, state.limit * SLOW_DECREASE);
+                state.decreases++;
+            } else {
+                state.limit = Math.min(maxLimit, state.limit + 1 / state.limit);
+            }
+        }
+    }
+
+    /**
+     * Перегрузка хоста: таймаут, 429 или 5xx. Возвращает время паузы в миллисекундах.
+     */
+    public long onOverload(String host, int attempt, long retryAfter) {
+        HostState state = state(host);
+        synchronized (state) {
+            state.limit = Math.max(1, state.limit * DECREASE);
+            state.decreases++;
+            long backoff = Math.min(MAX_BACKOFF, retryBackoff << Math.min(attempt, 16));
+            long pause = retryAfter > 0 ? Math.min(retryAfter, MAX_RETRY_AFTER) : backoff;
+            state.pausedUntil = Math.max(state.pausedUntil, System.currentTimeMillis() + pause);
+            return pause;
+        }
+    }
+
+    public int getLimit(String host) {
+        HostState state = hosts.get(host);
+        if (state == null) return initialLimit;
+        synchronized (state) {
+            return (int) state.limit;
+        }
+    }
+
+    public long getPausedUntil(String host) {
+        HostState state = hosts.get(host);
+        if (state == null) return 0;
+        synchronized (state) {
+            return state.pausedUntil;
+        }
+    }
+
+    public long getLatency(String host) {
+        HostState state = hosts.get(host);
+        if (state == null) return 0;
+        synchronized (state) {
+            return (long) state.latency;
+        }
+    }
+
+    public int getDecreases(String host) {
+        HostState state = hosts.get(host);
+        if (state == null) return 0;
+        synchronized (state) {
+            return state.decreases;
+        }
+    }
+
+    /**
+     * Таймаут запроса: в несколько раз больше сглаженного времени ответа хоста, но не больше fetch-timeout.
+     */
+    public int getTimeout(String host) {
+        HostState state = hosts.get(host);
+        if (state == null) return (int) maxTimeout;
+        synchronized (state) {
+            if (state.latency == 0) return (int) maxTimeout;
+            return (int) Math.min(maxTimeout, Math.max(MIN_TIMEOUT, (long) state.latency * 4));
+        }
+    }
+
+    private HostState state(String host) {
+        return hosts.computeIfAbsent(host, h -> new HostState(initialLimit));
+    }
+
+    private static class HostState {
+        private double limit;
+        private double latency = 0;
+        private long pausedUntil = 0;
+        private int decreases = 0;
+
+        HostState(double limit) {
+            this.limit = limit;
+        }
+
+        void updateLatency(long value) {
+            latency = latency == 0 ? value : latency + LATENCY_WEIGHT * (value - latency);
+        }
+    }
+}
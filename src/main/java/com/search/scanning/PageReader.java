@@ -1,133 +1,139 @@
 package com.search.scanning;
 
-import com.search.model.Page;
-import com.search.model.Site;
-import com.search.service.Storage;
+import com.search.model.PageState;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.jsoup.Connection;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
-import org.springframework.stereotype.Indexed;
-
-import java.io.IOException;
-import java.sql.SQLException;
-import java.util.ArrayList;
+import org.jsoup.nodes.Element;
+
+import java.io.ByteArrayInputStream;
+import java.net.http.HttpTimeoutException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
-@Indexed
 public class PageReader {
 
+    public static final String USER_AGENT = "Helicon Search Engine 1.0.0";
+
     private final String url;
-    private final Site site;
-    private int code;
-    private String content;
-    private final Storage storage;
+    private final FetchClient fetchClient;
+    private int timeout = 5000;
+    private long maxBodySize = 0;
     private final Logger logger = LogManager.getRootLogger();
 
-    public PageReader(String url, Site site, Storage storage) {
+    public PageReader(String url, FetchClient fetchClient) {
         this.url = url;
-        this.site = site;
-        this.storage = storage;
+        this.fetchClient = fetchClient;
+    }
+
+    public ParsedPage read() {
+        return read(null);
     }
 
-    public Document getConnection(String url) throws IOException, SQLException {
-        Connection connection = Jsoup.connect(url).userAgent("Helicon Search Engine 1.0.0").ignoreHttpErrors(true).maxBodySize(0);
-        Connection.Response response;
-        Document doc = null;
-        connection.timeout(5000);
+    public ParsedPage read(PageState known) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        if (known != null && known.getEtag() != null) {
+            headers.put("If-None-Match", known.getEtag());
+        }
+        if (known != null && known.getLastModified() != null) {
+            headers.put("If-Modified-Since", known.getLastModified());
+        }
+        Document doc;
         int code;
+        FetchClient.Response response;
         try {
-            response = connection.execute();
-            code = response.statusCode();
-            setCode(code);
-            doc = connection.get();
+            response = fetchClient.get(url, headers, timeout, maxBodySize, PageReader::isHtml);
+            code = response.getStatus();
+            if (code == ParsedPage.NOT_MODIFIED) {
+                return ParsedPage.notModified(url);
+            }
+            if (code >= 400) {
+                ParsedPage error = ParsedPage.error(url, code);
+                error.setRetryAfter(parseRetryAfter(response.getHeader("Retry-After")));
+                return error;
+            }
+            if (response.isSkipped()) {
+                return ParsedPage.notHtml(url);
+            }
+            doc = Jsoup.parse(new ByteArrayInputStream(response.getBody()), response.getCharset(), response.getUrl());
+        } catch (HttpTimeoutException ex) {
+            logger.trace(ex.getMessage());
+            return ParsedPage.error(url, ParsedPage.TIMEOUT);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return ParsedPage.error(url, 404);
         } catch (Exception ex) {
-            code = 404;
             logger.trace(ex.getMessage());
+            return ParsedPage.error(url, 404);
         }
+        ParsedPage parsedPage = new ParsedPage(url, code, doc.outerHtml(), doc.title(), doc.text(), extractLinks(doc));
+        parsedPage.setValidators(response.getHeader("ETag"), response.getHeader("Last-Modified"));
+        parsedPage.setTruncated(response.isTruncated());
+        Element canonical = doc.selectFirst("link[rel=canonical][href]");
+        parsedPage.setCanonicalUrl(canonical != null ? canonical.attr("abs:href") : response.getUrl());
+        return parsedPage;
+    }
 
+    /**
+     * Индексируются только HTML-страницы: text/html и application/xhtml+xml, параметры вроде charset не учитываются.
+     * Без заголовка Content-Type ответ считается HTML.
+     */
+    private static boolean isHtml(String contentType) {
+        if (contentType == null) return true;
+        int semicolon = contentType.indexOf(';');
+        String mediaType = (semicolon < 0 ? contentType : contentType.substring(0, semicolon)).trim().toLowerCase(Locale.ROOT);
+        return mediaType.isEmpty() || mediaType.equals("text/html") || mediaType.equals("application/xhtml+xml");
+    }
 
-        if (code >= 400) {
-            setContent("NULL. ERROR " + code);
-            storage.addPage(new Page(storage.increasePageIdAndGet(), url, code, content, site.getId()));
-        } else {
-            setContent(doc.outerHtml());
+    static long parseRetryAfter(String value) {
+        if (value == null || value.isBlank()) return 0;
+        value = value.trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException ignored) {
+        }
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, date.toInstant().toEpochMilli() - System.currentTimeMillis());
+        } catch (DateTimeParseException ignored) {
+            return 0;
         }
-        return doc;
     }
 
-    public List<PageReader> getChildrens() throws IOException, SQLException {
-        Document doc = getConnection(url);
-        if (doc == null) {
-            return new ArrayList<>();
-        }
-        List<String> children = doc.getElementsByTag("a")
-                .stream()
-                .map(l -> {
-                    String tag = String.valueOf(l);
-                    int start = tag.indexOf("href=\"") + 6;
-                    int end = tag.indexOf("\"", start);
-                    try {
-                        return tag.substring(start, end);
-                    } catch (StringIndexOutOfBoundsException ex) {
-                        logger.trace(ex.getMessage());
-                        return "";
-                    }
-                })
-                .toList();
-        return filterChildren(children)
+    public List<String> readStoredLinks(String content) {
+        return extractLinks(Jsoup.parse(content, url));
+    }
+
+    private List<String> extractLinks(Document doc) {
+        return doc.select("a[href]")
                 .stream()
-                .map(c -> new PageReader(c, site, storage))
+                .map(a -> a.attr("abs:href"))
+                .filter(l -> !l.isEmpty())
                 .toList();
     }
 
-    public List<String> filterChildren(List<String> children) {
-
-        List<String> links = children.stream()
-                .filter(l -> !storage.getUsedLinks().contains(l))
-                .map(l -> {
-                    if (l.startsWith("/")) {
-                        storage.addUsedLink(l);
-                        l = url + l;
-                    }
-                    l = l.replaceAll("//", "/");
-                    l = l.replaceAll("https:/", "https://");
-                    l = l.replaceAll("http:/", "http://");
-
-                    return l;
-                })
-                .filter(lf -> !storage.getUsedLinks().contains(lf))
+    public List<String> filterChildren(List<String> children, UrlCanonicalizer canonicalizer) {
+        return children.stream()
+                .map(l -> canonicalizer.canonicalize(url, l))
+                .filter(l -> l != null)
                 .filter(l -> !l.equals(url))
-                .filter(l -> l.contains(url))
-                .filter(l -> l.startsWith("https:/") || l.startsWith("http:/"))
-                .filter(l -> !l.contains(".pdf"))
-                .filter(l -> !l.contains(".svg"))
-                .filter(l -> {
-                    if (l.length() < url.length()) {
-                        return false;
-                    }
-                    return l.substring(0, url.length()).contains(url);
-                })
                 .filter(l -> l.length() <= 190)
+                .distinct()
                 .toList();
-        return links;
-    }
-
-    public int getCode() {
-        return code;
-    }
-
-    public void setCode(int code) {
-        this.code = code;
     }
 
-    public String getContent() {
-        return content;
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
     }
 
-    public void setContent(String content) {
-        this.content = content;
+    public void setMaxBodySize(long maxBodySize) {
+        this.maxBodySize = maxBodySize;
     }
 
     public String getUrl() {
@@ -135,6 +141,3 @@ public class PageReader {
     }
 
 }
-
-
-
@@ -0,0 +1,141 @@
+package com.search.scanning;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+public class ParsedPage {
+
+    public static final int NOT_MODIFIED = 304;
+    public static final int TIMEOUT = 408;
+    public static final int UNSUPPORTED_MEDIA_TYPE = 415;
+    public static final int TOO_MANY_REQUESTS = 429;
+
+    private final String url;
+    private final int code;
+    private final String content;
+    private final String title;
+    private final String text;
+    private final List<String> links;
+    private String etag;
+    private String lastModified;
+    private String canonicalUrl;
+    private long retryAfter = 0;
+    private boolean truncated = false;
+
+    public ParsedPage(String url, int code, String content, String title, String text, List<String> links) {
+        this.url = url;
+        this.code = code;
+        this.content = content;
+        this.title = title;
+        this.text = text;
+        this.links = links;
+    }
+
+    public static ParsedPage error(String url, int code) {
+        return new ParsedPage(url, code, "NULL. ERROR " + code, "", "", List.of());
+    }
+
+    public static ParsedPage notHtml(String url) {
+        return new ParsedPage(url, UNSUPPORTED_MEDIA_TYPE, null, null, null, List.of());
+    }
+
+    public static ParsedPage notModified(String url) {
+        return new ParsedPage(url, NOT_MODIFIED, null, null, null, List.of());
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public List<String> getLinks() {
+        return links;
+    }
+
+    public boolean isError() {
+        return code >= 400;
+    }
+
+    public boolean isNotHtml() {
+        return code == UNSUPPORTED_MEDIA_TYPE;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public void setTruncated(boolean truncated) {
+        this.truncated = truncated;
+    }
+
+    public boolean isOverload() {
+        return code == TIMEOUT || code == TOO_MANY_REQUESTS || code >= 500;
+    }
+
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+
+    public void setRetryAfter(long retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+
+    public boolean isNotModified() {
+        return code == NOT_MODIFIED;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public void setValidators(String etag, String lastModified) {
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    public String getCanonicalUrl() {
+        return canonicalUrl;
+    }
+
+    public void setCanonicalUrl(String canonicalUrl) {
+        this.canonicalUrl = canonicalUrl;
+    }
+
+    public long getContentHash() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(code).getBytes(StandardCharsets.UTF_8));
+            digest.update(String.valueOf(title).getBytes(StandardCharsets.UTF_8));
+            digest.update(String.valueOf(text).getBytes(StandardCharsets.UTF_8));
+            byte[] hash = digest.digest();
+            long result = 0;
+            for (int i = 0; i < 8; i++) {
+                result = (result << 8) | (hash[i] & 0xFF);
+            }
+            return result;
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.search.scanning;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class RobotsCache {
+
+    private static final long MAX_ROBOTS_SIZE = 512 * 1024;
+
+    private final Map<String, RobotsRules> rulesByRoot = new ConcurrentHashMap<>();
+    private final FetchClient fetchClient;
+    private final Logger logger = LogManager.getRootLogger();
+
+    public RobotsCache(FetchClient fetchClient) {
+        this.fetchClient = fetchClient;
+    }
+
+    public RobotsRules get(String siteRoot) {
+        return rulesByRoot.computeIfAbsent(siteRoot, this::load);
+    }
+
+    private RobotsRules load(String siteRoot) {
+        String robotsUrl = siteRoot + "/robots.txt";
+        try {
+            FetchClient.Response response = fetchClient.get(robotsUrl, Map.of(), 5000, MAX_ROBOTS_SIZE);
+            if (response.getStatus() >= 400) {
+                return RobotsRules.allowAll();
+            }
+            RobotsRules rules = RobotsRules.parse(response.getBodyAsString(), PageReader.USER_AGENT);
+            logger.info("Загружен " + robotsUrl);
+            return rules;
+        } catch (Exception ex) {
+            logger.debug("Не удалось загрузить " + robotsUrl + ": " + ex.getMessage());
+            return RobotsRules.allowAll();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.search.scanning;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Правила robots.txt для нашего агента: Allow/Disallow с шаблонами * и $ (побеждает самое длинное
+ * совпадение, при равенстве - Allow), Crawl-delay и ссылки на карты сайта.
+ */
+public class RobotsRules {
+
+    private final List<Rule> rules;
+    private final long crawlDelay;
+    private final List<String> sitemaps;
+
+    private RobotsRules(List<Rule> rules, long crawlDelay, List<String> sitemaps) {
+        this.rules = rules;
+        this.crawlDelay = crawlDelay;
+        this.sitemaps = sitemaps;
+    }
+
+    public static RobotsRules allowAll() {
+        return new RobotsRules(List.of(), -1, List.of());
+    }
+
+    public static RobotsRules parse(String content, String userAgent) {
+        String agent = userAgent.toLowerCase(Locale.ROOT);
+        List<String> sitemaps = new ArrayList<>();
+        List<Group> groups = new ArrayList<>();
+        Group current = null;
+        boolean readingAgents = false;
+        for (String rawLine : content.split("\n")) {
+            String line = rawLine;
+            int comment = line.indexOf('#');
+            if (comment >= 0) line = line.substring(0, comment);
+            int colon = line.indexOf(':');
+            if (colon < 0) continue;
+            String field = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+            switch (field) {
+                case "user-agent" -> {
+                    if (current == null || !readingAgents) {
+                        current = new Group();
+                        groups.add(current);
+                    }
+                    current.agents.add(value.toLowerCase(Locale.ROOT));
+                    readingAgents = true;
+                }
+                case "allow", "disallow" -> {
+                    readingAgents = false;
+                    if (current != null && !value.isEmpty()) {
+                        current.rules.add(new Rule(value, field.equals("allow")));
+                    }
+                }
+                case "crawl-delay" -> {
+                    readingAgents = false;
+                    if (current != null) {
+                        try {
+                            current.crawlDelay = (long) (Double.parseDouble(value) * 1000);
+                        } catch (NumberFormatException ignored) {
+                        }
+                    }
+                }
+                case "sitemap" -> sitemaps.add(value);
+                default -> readingAgents = false;
+            }
+        }
+
+        Group selected = null;
+        int selectedLength = -1;
+        for (Group group : groups) {
+            for (String groupAgent : group.agents) {
+                int length;
+                if (groupAgent.equals("*")) {
+                    length = 0;
+                } else if (agent.contains(groupAgent)) {
+                    length = groupAgent.length();
+                } else {
+                    continue;
+                }
+                if (length > selectedLength) {
+                    selected = group;
+                    selectedLength = length;
+                }
+            }
+        }
+        if (selected == null) {
+            return new RobotsRules(List.of(), -1, sitemaps);
+        }
+        return new RobotsRules(selected.rules, selected.crawlDelay, sitemaps);
+    }
+
+    public boolean isAllowed(String url) {
+        if (rules.isEmpty()) return true;
+        String path = pathOf(url);
+        Rule best = null;
+        for (Rule rule : rules) {
+            if (!rule.matches(path)) continue;
+            if (best == null || rule.pattern.length() > best.pattern.length()
+                    || (rule.pattern.length() == best.pattern.length() && rule.allow)) {
+                best = rule;
+            }
+        }
+        return best == null || best.allow;
+    }
+
+    public long getCrawlDelay() {
+        return crawlDelay;
+    }
+
+    public List<String> getSitemaps() {
+        return sitemaps;
+    }
+
+    private static String pathOf(String url) {
+        int schemeEnd = url.indexOf("://");
+        int start = url.indexOf('/', schemeEnd < 0 ? 0 : schemeEnd + 3);
+        if (start < 0) return "/";
+        int fragment = url.indexOf('#', start);
+        return fragment < 0 ? url.substring(start) : url.substring(start, fragment);
+    }
+
+    private static class Group {
+        private final List<String> agents = new ArrayList<>();
+        private final List<Rule> rules = new ArrayList<>();
+        private long crawlDelay = -1;
+    }
+
+    private static class Rule {
+        private final String pattern;
+        private final boolean anchored;
+        private final boolean allow;
+
+        Rule(String pattern, boolean allow) {
+            this.anchored = pattern.endsWith("$");
+            this.pattern = anchored ? pattern.substring(0, pattern.length() - 1) : pattern;
+            this.allow = allow;
+        }
+
+        boolean matches(String path) {
+            int p = 0;
+            int s = 0;
+            int star = -1;
+            int starMatch = 0;
+            while (s < path.length()) {
+                if (p == pattern.length() && !anchored) {
+                    return true;
+                }
+                if (p < pattern.length() && pattern.charAt(p) == '*') {
+                    star = p++;
+                    starMatch = s;
+                } else if (p < pattern.length() && pattern.charAt(p) == path.charAt(s)) {
+                    p++;
+                    s++;
+                } else if (star >= 0) {
+                    p = star + 1;
+                    s = ++starMatch;
+                } else {
+                    return false;
+                }
+            }
+            while (p < pattern.length() && pattern.charAt(p) == '*') {
+                p++;
+            }
+            return p == pattern.length();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.search.scanning;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Множество просмотренных ссылок. Хранит 64-битные отпечатки url в открытых хеш-таблицах
+ * примитивов, разбитых на независимо блокируемые части.
+ */
+public class SeenUrlSet {
+
+    private static final int STRIPES = 64;
+    private static final long EMPTY = 0L;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public SeenUrlSet(int expectedUrls) {
+        int perStripe = Math.max(16, expectedUrls / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+    }
+
+    public boolean add(String url) {
+        return addFingerprint(fingerprint(url));
+    }
+
+    public boolean contains(String url) {
+        long fingerprint = fingerprint(url);
+        return stripeOf(fingerprint).contains(fingerprint);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    /**
+     * Записывает отпечатки в поток, в конце - 0 (отпечаток ссылки никогда не равен нулю).
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        for (Stripe stripe : stripes) {
+            stripe.writeTo(out);
+        }
+        out.writeLong(EMPTY);
+    }
+
+    public void readFrom(DataInputStream in) throws IOException {
+        try {
+            long fingerprint;
+            while ((fingerprint = in.readLong()) != EMPTY) {
+                addFingerprint(fingerprint);
+            }
+        } catch (EOFException ignored) {
+        }
+    }
+
+    private boolean addFingerprint(long fingerprint) {
+        return stripeOf(fingerprint).add(fingerprint);
+    }
+
+    private Stripe stripeOf(long fingerprint) {
+        return stripes[(int) (fingerprint >>> 58) & (STRIPES - 1)];
+    }
+
+    public static long fingerprint(String url) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            hash ^= url.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == EMPTY ? 1L : hash;
+    }
+
+    private static class Stripe {
+        private long[] table;
+        private int size;
+
+        Stripe(int expected) {
+            table = new long[tableSizeFor(expected)];
+        }
+
+        synchronized boolean add(long fingerprint) {
+            if ((size + 1) * 4 > table.length * 3) {
+                resize();
+            }
+            if (insert(table, fingerprint)) {
+                size++;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized boolean contains(long fingerprint) {
+            int mask = table.length - 1;
+            for (int i = index(fingerprint, mask); ; i = (i + 1) & mask) {
+                long value = table[i];
+                if (value == EMPTY) return false;
+                if (value == fingerprint) return true;
+            }
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized void clear() {
+            Arrays.fill(table, EMPTY);
+            size = 0;
+        }
+
+        synchronized void writeTo(DataOutputStream out) throws IOException {
+            for (long value : table) {
+                if (value != EMPTY) out.writeLong(value);
+            }
+        }
+
+        private void resize() {
+            long[] resized = new long[table.length * 2];
+            for (long value : table) {
+                if (value != EMPTY) insert(resized, value);
+            }
+            table = resized;
+        }
+
+        private static boolean insert(long[] table, long fingerprint) {
+            int mask = table.length - 1;
+            for (int i = index(fingerprint, mask); ; i = (i + 1) & mask) {
+                long value = table[i];
+                if (value == EMPTY) {
+                    table[i] = fingerprint;
+                    return true;
+                }
+                if (value == fingerprint) return false;
+            }
+        }
+
+        private static int index(long fingerprint, int mask) {
+            return (int) fingerprint & mask;
+        }
+
+        private static int tableSizeFor(int expected) {
+            int size = 16;
+            while (size * 3 < expected * 4) {
+                size <<= 1;
+            }
+            return size;
+        }
+    }
+}
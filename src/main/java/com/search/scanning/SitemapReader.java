@@ -0,0 +1,111 @@
+package com.search.scanning;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Читает карты сайта (в том числе индексные и сжатые gzip) и возвращает адреса страниц с датой lastmod.
+ */
+public class SitemapReader {
+
+    private static final int MAX_NESTING = 3;
+    private static final long MAX_SITEMAP_SIZE = 50L * 1024 * 1024;
+
+    private final FetchClient fetchClient;
+    private final int maxUrls;
+    private final Logger logger = LogManager.getRootLogger();
+
+    public SitemapReader(FetchClient fetchClient, int maxUrls) {
+        this.fetchClient = fetchClient;
+        this.maxUrls = maxUrls;
+    }
+
+    public List<Entry> read(List<String> sitemapUrls) {
+        List<Entry> entries = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        for (String sitemapUrl : sitemapUrls) {
+            read(sitemapUrl, 0, entries, visited);
+        }
+        return entries;
+    }
+
+    private void read(String sitemapUrl, int nesting, List<Entry> entries, Set<String> visited) {
+        if (nesting > MAX_NESTING || entries.size() >= maxUrls || !visited.add(sitemapUrl)) return;
+        Document document = fetch(sitemapUrl);
+        if (document == null) return;
+        for (Element sitemap : document.select("sitemapindex > sitemap > loc")) {
+            read(sitemap.text().trim(), nesting + 1, entries, visited);
+        }
+        for (Element url : document.select("urlset > url")) {
+            if (entries.size() >= maxUrls) break;
+            Element loc = url.selectFirst("loc");
+            if (loc == null) continue;
+            Element lastmod = url.selectFirst("lastmod");
+            entries.add(new Entry(loc.text().trim(), lastmod == null ? 0 : parseLastmod(lastmod.text().trim())));
+        }
+        logger.info("Прочитана карта сайта " + sitemapUrl + ", всего адресов: " + entries.size());
+    }
+
+    private Document fetch(String sitemapUrl) {
+        try {
+            FetchClient.Response response = fetchClient.get(sitemapUrl, Map.of(), 10000, MAX_SITEMAP_SIZE);
+            if (response.getStatus() >= 400) return null;
+            byte[] body = response.getBody();
+            if (body.length > 1 && body[0] == (byte) 0x1f && body[1] == (byte) 0x8b) {
+                try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                    return Jsoup.parse(in, "UTF-8", sitemapUrl, Parser.xmlParser());
+                }
+            }
+            return Jsoup.parse(new ByteArrayInputStream(body), response.getCharset(), sitemapUrl, Parser.xmlParser());
+        } catch (Exception ex) {
+            logger.debug("Не удалось прочитать карту сайта " + sitemapUrl + ": " + ex.getMessage());
+            return null;
+        }
+    }
+
+    private long parseLastmod(String value) {
+        try {
+            if (value.length() <= 10) {
+                return LocalDate.parse(value).atStartOfDay().toInstant(ZoneOffset.UTC).toEpochMilli();
+            }
+            return OffsetDateTime.parse(value).toInstant().toEpochMilli();
+        } catch (DateTimeParseException ex) {
+            return 0;
+        }
+    }
+
+    public static class Entry {
+        private final String url;
+        private final long lastModified;
+
+        public Entry(String url, long lastModified) {
+            this.url = url;
+            this.lastModified = lastModified;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+}
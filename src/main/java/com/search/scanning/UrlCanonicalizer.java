@@ -0,0 +1,208 @@
+package com.search.scanning;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Приводит ссылки сайта к единому виду, чтобы одна и та же страница не загружалась по разным адресам:
+ * схема и хост сайта (в том числе вариант с www.), путь без повторных и конечных слешей,
+ * параметры запроса без меток отслеживания и в отсортированном порядке, без фрагмента.
+ * Разбор выполняется поиском символов в строке, без регулярных выражений.
+ */
+public class UrlCanonicalizer {
+
+    private static final Set<String> SKIPPED_EXTENSIONS = Set.of(
+            "pdf", "svg", "jpg", "jpeg", "png", "gif", "webp", "bmp", "ico", "tif", "tiff",
+            "zip", "rar", "7z", "gz", "tar", "mp3", "mp4", "avi", "mov", "wmv", "flv", "webm",
+            "doc", "docx", "xls", "xlsx", "ppt", "pptx", "exe", "apk", "css", "js");
+
+    private final String scheme;
+    private final String host;
+    private final String bareHost;
+    private final String root;
+    private final Set<String> trackingParams = new HashSet<>();
+    private final List<String> trackingPrefixes = new ArrayList<>();
+
+    public UrlCanonicalizer(String siteUrl, List<String> trackingParams) {
+        int schemeEnd = siteUrl.indexOf("://");
+        this.scheme = siteUrl.substring(0, schemeEnd).toLowerCase(Locale.ROOT);
+        int hostEnd = siteUrl.indexOf('/', schemeEnd + 3);
+        this.host = siteUrl.substring(schemeEnd + 3, hostEnd < 0 ? siteUrl.length() : hostEnd).toLowerCase(Locale.ROOT);
+        this.bareHost = stripWww(host);
+        this.root = scheme + "://" + host;
+        for (String param : trackingParams) {
+            if (param.endsWith("*")) {
+                trackingPrefixes.add(param.substring(0, param.length() - 1));
+            } else {
+                this.trackingParams.add(param);
+            }
+        }
+    }
+
+    /**
+     * Возвращает каноническую форму ссылки или null, если ссылка ведет за пределы сайта
+     * или на ресурс, который не нужно индексировать.
+     */
+    public String canonicalize(String base, String href) {
+        if (href == null) return null;
+        String url = href.trim();
+        if (url.isEmpty()) return null;
+        char first = url.charAt(0);
+        if (first == '/' && (url.length() == 1 || url.charAt(1) != '/')) {
+            url = root + url;
+        } else if ((first == '?' || first == '#') && base != null) {
+            int baseEnd = base.indexOf(first == '?' ? '?' : '#');
+            int fragment = base.indexOf('#');
+            if (baseEnd < 0 || (fragment >= 0 && fragment < baseEnd)) baseEnd = fragment;
+            url = (baseEnd < 0 ? base : base.substring(0, baseEnd)) + url;
+        } else if (!isAbsolute(url)) {
+            if (base == null) return null;
+            try {
+                url = new URL(new URL(base), url).toString();
+            } catch (MalformedURLException ex) {
+                return null;
+            }
+        }
+        return canonicalize(url);
+    }
+
+    public String canonicalize(String url) {
+        if (url == null) return null;
+        int schemeEnd = url.indexOf("://");
+        if (schemeEnd < 0) return null;
+        String urlScheme = url.substring(0, schemeEnd);
+        if (!urlScheme.equalsIgnoreCase("http") && !urlScheme.equalsIgnoreCase("https")) return null;
+
+        int fragment = url.indexOf('#');
+        int end = fragment < 0 ? url.length() : fragment;
+        int authorityStart = schemeEnd + 3;
+        int authorityEnd = authorityStart;
+        while (authorityEnd < end) {
+            char c = url.charAt(authorityEnd);
+            if (c == '/' || c == '?') break;
+            authorityEnd++;
+        }
+        String authority = url.substring(authorityStart, authorityEnd).toLowerCase(Locale.ROOT);
+        int userInfo = authority.lastIndexOf('@');
+        if (userInfo >= 0) authority = authority.substring(userInfo + 1);
+        int port = authority.indexOf(':');
+        if (port >= 0) {
+            String portValue = authority.substring(port + 1);
+            if (portValue.equals("80") || portValue.equals("443") || portValue.isEmpty()) {
+                authority = authority.substring(0, port);
+            }
+        }
+        if (!stripWww(authority).equals(bareHost)) return null;
+
+        int queryStart = url.indexOf('?', authorityEnd);
+        if (queryStart >= end) queryStart = -1;
+        int pathEnd = queryStart < 0 ? end : queryStart;
+        String path = normalizePath(url, authorityEnd, pathEnd);
+        if (path == null) return null;
+
+        StringBuilder canonical = new StringBuilder(root.length() + path.length() + 16);
+        canonical.append(root).append(path);
+        if (queryStart >= 0) {
+            appendQuery(canonical, url.substring(queryStart + 1, end));
+        }
+        return canonical.toString();
+    }
+
+    private String normalizePath(String url, int start, int end) {
+        StringBuilder path = new StringBuilder(end - start + 1);
+        for (int i = start; i < end; i++) {
+            char c = url.charAt(i);
+            if (c == '/' && path.length() > 0 && path.charAt(path.length() - 1) == '/') continue;
+            path.append(c);
+        }
+        if (path.length() > 0 && path.charAt(0) != '/') path.insert(0, '/');
+        if (path.indexOf("/.") >= 0) removeDotSegments(path);
+        while (path.length() > 0 && path.charAt(path.length() - 1) == '/') {
+            path.setLength(path.length() - 1);
+        }
+        int dot = path.lastIndexOf(".");
+        if (dot > path.lastIndexOf("/")) {
+            String extension = path.substring(dot + 1).toLowerCase(Locale.ROOT);
+            if (SKIPPED_EXTENSIONS.contains(extension)) return null;
+        }
+        return path.toString();
+    }
+
+    private void removeDotSegments(StringBuilder path) {
+        List<String> segments = new ArrayList<>();
+        int i = 1;
+        while (i <= path.length()) {
+            int next = path.indexOf("/", i);
+            if (next < 0) next = path.length();
+            String segment = path.substring(i, next);
+            if (segment.equals("..")) {
+                if (!segments.isEmpty()) segments.remove(segments.size() - 1);
+            } else if (!segment.equals(".")) {
+                segments.add(segment);
+            }
+            i = next + 1;
+        }
+        path.setLength(0);
+        for (String segment : segments) {
+            path.append('/').append(segment);
+        }
+    }
+
+    private void appendQuery(StringBuilder canonical, String query) {
+        if (query.isEmpty()) return;
+        List<String> params = new ArrayList<>();
+        int start = 0;
+        while (start <= query.length()) {
+            int next = query.indexOf('&', start);
+            if (next < 0) next = query.length();
+            if (next > start) {
+                String param = query.substring(start, next);
+                int eq = param.indexOf('=');
+                if (!isTracking(eq < 0 ? param : param.substring(0, eq))) {
+                    params.add(param);
+                }
+            }
+            start = next + 1;
+        }
+        if (params.isEmpty()) return;
+        String[] sorted = params.toArray(new String[0]);
+        Arrays.sort(sorted);
+        canonical.append('?');
+        for (int i = 0; i < sorted.length; i++) {
+            if (i > 0) canonical.append('&');
+            canonical.append(sorted[i]);
+        }
+    }
+
+    private boolean isTracking(String name) {
+        if (trackingParams.contains(name)) return true;
+        for (String prefix : trackingPrefixes) {
+            if (name.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    public String getRoot() {
+        return root;
+    }
+
+    private static boolean isAbsolute(String url) {
+        int colon = url.indexOf(':');
+        if (colon <= 0) return false;
+        for (int i = 0; i < colon; i++) {
+            char c = url.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '+' && c != '-' && c != '.') return false;
+        }
+        return true;
+    }
+
+    private static String stripWww(String host) {
+        return host.startsWith("www.") ? host.substring(4) : host;
+    }
+}
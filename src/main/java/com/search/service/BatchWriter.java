@@ -0,0 +1,160 @@
+package com.search.service;
+
+import org.apache.logging.log4j.Logger;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Пакетная запись строк через PreparedStatement: строки уходят частями по chunkSize, каждая часть -
+ * в своей транзакции на соединении из пула. Часть, упавшая на временной ошибке (обрыв связи, дедлок), повторяется
+ * с нарастающей паузой; если повторы не помогли, выбрасывается BatchWriteException с числом
+ * уже записанных строк, чтобы вызывающий код сохранил остальные до следующей попытки.
+ */
+public class BatchWriter {
+
+    private final DataSource dataSource;
+    private final int chunkSize;
+    private final int retries;
+    private final long retryBackoff;
+    private final Logger logger;
+    private final AtomicLong writtenRows = new AtomicLong();
+    private final AtomicLong writeNanos = new AtomicLong();
+    private final AtomicLong retriedChunks = new AtomicLong();
+    private final AtomicLong failedWrites = new AtomicLong();
+
+    public BatchWriter(DataSource dataSource, int chunkSize, int retries, long retryBackoff, Logger logger) {
+        this.dataSource = dataSource;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.retries = Math.max(0, retries);
+        this.retryBackoff = Math.max(0, retryBackoff);
+        this.logger = logger;
+    }
+
+    /**
+     * Записывает rows строк запросом sql, binder заполняет параметры строки с данным номером.
+     */
+    public void write(String table, String sql, int rows, RowBinder binder) throws SQLException {
+        if (rows == 0) return;
+        long start = System.nanoTime();
+        int committed = 0;
+        try {
+            while (committed < rows) {
+                int end = Math.min(rows, committed + chunkSize);
+                writeChunk(table, sql, committed, end, binder);
+                writtenRows.addAndGet(end - committed);
+                committed = end;
+            }
+        } finally {
+            writeNanos.addAndGet(System.nanoTime() - start);
+        }
+        long nanos = System.nanoTime() - start;
+        logger.info(String.format("%d строк записано в %s за %d мс (%.0f строк/с)", rows, table,
+                nanos / 1_000_000, rows / Math.max(nanos / 1e9, 1e-9)));
+    }
+
+    private void writeChunk(String table, String sql, int from, int to, RowBinder binder) throws SQLException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                executeChunk(sql, from, to, binder);
+                return;
+            } catch (SQLException ex) {
+                boolean transientError = ex instanceof SQLTransientException || ex instanceof SQLRecoverableException;
+                if (!transientError || attempt >= retries) {
+                    failedWrites.incrementAndGet();
+                    logger.error(String.format("Не удалось записать строки %d-%d в %s: %s", from, to, table, ex.getMessage()));
+                    throw new BatchWriteException(table, from, ex);
+                }
+                retriedChunks.incrementAndGet();
+                logger.warn(String.format("Повтор записи строк %d-%d в %s (попытка %d): %s", from, to, table,
+                        attempt + 1, ex.getMessage()));
+                pause(retryBackoff << attempt, table, from, ex);
+            }
+        }
+    }
+
+    private void executeChunk(String sql, int from, int to, RowBinder binder) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (int row = from; row < to; row++) {
+                    binder.bind(statement, row);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                connection.commit();
+            } catch (SQLException | RuntimeException ex) {
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackEx) {
+                    ex.addSuppressed(rollbackEx);
+                }
+                throw ex;
+            } finally {
+                try {
+                    connection.setAutoCommit(autoCommit);
+                } catch (SQLException ignored) {
+                    // соединение оборвано, пул его закроет и выдаст новое
+                }
+            }
+        }
+    }
+
+    private void pause(long millis, String table, int from, SQLException cause) throws BatchWriteException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            failedWrites.incrementAndGet();
+            throw new BatchWriteException(table, from, cause);
+        }
+    }
+
+    public long getWrittenRows() {
+        return writtenRows.get();
+    }
+
+    public long getRetriedChunks() {
+        return retriedChunks.get();
+    }
+
+    public long getFailedWrites() {
+        return failedWrites.get();
+    }
+
+    /**
+     * Средняя скорость записи за все время работы, строк в секунду.
+     */
+    public double getRowsPerSecond() {
+        long nanos = writeNanos.get();
+        return nanos == 0 ? 0 : writtenRows.get() / (nanos / 1e9);
+    }
+
+    public interface RowBinder {
+        void bind(PreparedStatement statement, int row) throws SQLException;
+    }
+
+    /**
+     * Запись прервана: первые getCommittedRows() строк сохранены, остальные нет.
+     */
+    public static class BatchWriteException extends SQLException {
+        private static final long serialVersionUID = 1L;
+        private final int committedRows;
+
+        BatchWriteException(String table, int committedRows, SQLException cause) {
+            super("Запись в " + table + " прервана после " + committedRows + " строк: " + cause.getMessage(),
+                    cause.getSQLState(), cause.getErrorCode(), cause);
+            this.committedRows = committedRows;
+        }
+
+        public int getCommittedRows() {
+            return committedRows;
+        }
+    }
+}
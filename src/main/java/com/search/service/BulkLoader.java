@@ -0,0 +1,267 @@
+package com.search.service;
+
+import com.search.model.Page;
+import com.search.model.PageState;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Запись полной переиндексации через файлы: страницы, их тексты и состояния и индексы дописываются
+ * в TSV-файлы и загружаются в базу командой LOAD DATA LOCAL INFILE. Вторичные индексы таблиц page и indexes
+ * удаляются перед первой загрузкой и создаются заново в конце одним ALTER TABLE на таблицу. Их описания
+ * хранятся в файле рядом с данными, чтобы после сбоя вернуть их при следующем запуске.
+ */
+public class BulkLoader {
+
+    private static final List<String> DEFERRED_TABLES = List.of("page", "indexes");
+    private static final String DEFERRED_INDEXES = "deferred-indexes.tsv";
+
+    private final DBConnector dbConnector;
+    private final Path dir;
+    private final Logger logger;
+    private final TsvFile pageFile;
+    private final TsvFile pageTextFile;
+    private final TsvFile pageStateFile;
+    private final TsvFile indexFile;
+    private final List<TsvFile> files;
+
+    public BulkLoader(DBConnector dbConnector, Path dir, Logger logger) {
+        this.dbConnector = dbConnector;
+        this.dir = dir;
+        this.logger = logger;
+        pageFile = new TsvFile("page", "(id, code, content, path, site_id)", false);
+        pageTextFile = new TsvFile("page_text", "(page_id, title, text)", true);
+        pageStateFile = new TsvFile("page_state", "(page_id, etag, last_modified, content_hash, @duplicate_of) " +
+                "SET duplicate_of = NULLIF(@duplicate_of, 0)", true);
+        indexFile = new TsvFile("indexes", "(_rank, lemma_id, page_id)", false);
+        files = List.of(pageFile, pageTextFile, pageStateFile, indexFile);
+    }
+
+    /**
+     * Готовит каталог и удаляет вторичные индексы. Индексы, оставшиеся удаленными после прерванной загрузки,
+     * сначала восстанавливаются, поэтому их описания не теряются.
+     */
+    public void begin() throws IOException, SQLException {
+        Files.createDirectories(dir);
+        recover();
+        Map<String, List<String>> deferred = new LinkedHashMap<>();
+        try {
+            for (String table : DEFERRED_TABLES) {
+                deferred.put(table, dbConnector.dropSecondaryIndexes(table));
+            }
+        } finally {
+            List<String> lines = new ArrayList<>();
+            deferred.forEach((table, definitions) -> definitions.forEach(d -> lines.add(table + "\t" + d)));
+            Files.write(dir.resolve(DEFERRED_INDEXES), lines, StandardCharsets.UTF_8);
+        }
+        logger.info("Загрузка через файлы: вторичные индексы удалены до конца индексации " + deferred);
+    }
+
+    /**
+     * Восстанавливает индексы, удаленные прерванной загрузкой, и удаляет оставшиеся от нее файлы.
+     */
+    public void recover() throws IOException, SQLException {
+        restoreIndexes();
+        for (TsvFile file : files) {
+            if (Files.deleteIfExists(file.path)) {
+                logger.info("Удален незагруженный файл прерванной загрузки " + file.path);
+            }
+        }
+    }
+
+    public void writePages(Collection<Page> pages) throws IOException {
+        for (Page page : pages) {
+            pageFile.value(page.getId()).value(page.getCode()).value("'" + page.getContent() + "'")
+                    .value("'" + page.getPath() + "'").value(page.getSiteId()).endRow();
+            pageTextFile.value(page.getId()).value(page.getTitle() == null ? "" : page.getTitle())
+                    .value(page.getText() == null ? "" : page.getText()).endRow();
+        }
+    }
+
+    public void writePageStates(Collection<PageState> states) throws IOException {
+        for (PageState state : states) {
+            pageStateFile.value(state.getPageId()).value(state.getEtag()).value(state.getLastModified())
+                    .value(state.getContentHash()).value(state.getDuplicateOf()).endRow();
+        }
+    }
+
+    public void writeIndexes(PostingBuffer postings) throws IOException {
+        for (int i = 0; i < postings.size(); i++) {
+            indexFile.value(postings.getRank(i)).value(postings.getTermId(i)).value(postings.getPageId(i)).endRow();
+        }
+    }
+
+    /**
+     * Строк в файлах, еще не загруженных в базу.
+     */
+    public long getPendingRows() {
+        long rows = 0;
+        for (TsvFile file : files) {
+            rows += file.rows;
+        }
+        return rows;
+    }
+
+    /**
+     * Загружает накопленные файлы: страницы раньше индексов, которые на них ссылаются. Загруженный файл
+     * удаляется сразу, поэтому после ошибки повтор загрузит только оставшиеся.
+     */
+    public void load() throws IOException, SQLException {
+        for (TsvFile file : files) {
+            file.load();
+        }
+    }
+
+    /**
+     * Загружает остаток и создает заново вторичные индексы.
+     */
+    public void finish() throws IOException, SQLException {
+        load();
+        restoreIndexes();
+    }
+
+    private void restoreIndexes() throws IOException, SQLException {
+        Path deferredFile = dir.resolve(DEFERRED_INDEXES);
+        if (!Files.exists(deferredFile)) return;
+        Map<String, List<String>> deferred = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(deferredFile, StandardCharsets.UTF_8)) {
+            int tab = line.indexOf('\t');
+            if (tab > 0) {
+                deferred.computeIfAbsent(line.substring(0, tab), t -> new ArrayList<>()).add(line.substring(tab + 1));
+            }
+        }
+        for (Map.Entry<String, List<String>> table : deferred.entrySet()) {
+            long start = System.currentTimeMillis();
+            dbConnector.addIndexes(table.getKey(), table.getValue());
+            logger.info(String.format("Индексы таблицы %s созданы заново за %d мс", table.getKey(),
+                    System.currentTimeMillis() - start));
+        }
+        Files.delete(deferredFile);
+    }
+
+    /**
+     * Файл одной таблицы в формате LOAD DATA по умолчанию: поля через табуляцию, строки через \n,
+     * спецсимволы экранируются обратной косой чертой, NULL записывается как \N.
+     */
+    private class TsvFile {
+        private final String table;
+        private final String columns;
+        private final boolean replace;
+        private final Path path;
+        private Writer writer;
+        private boolean pending = false;
+        private boolean rowStarted = false;
+        private long rows = 0;
+
+        private TsvFile(String table, String columns, boolean replace) {
+            this.table = table;
+            this.columns = columns;
+            this.replace = replace;
+            this.path = dir.resolve(table + ".tsv");
+        }
+
+        private TsvFile value(int value) throws IOException {
+            return raw(Integer.toString(value));
+        }
+
+        private TsvFile value(long value) throws IOException {
+            return raw(Long.toString(value));
+        }
+
+        private TsvFile value(float value) throws IOException {
+            return raw(Float.toString(value));
+        }
+
+        private TsvFile value(String value) throws IOException {
+            if (value == null) {
+                return raw("\\N");
+            }
+            separate();
+            int from = 0;
+            for (int i = 0; i < value.length(); i++) {
+                String escaped = escape(value.charAt(i));
+                if (escaped != null) {
+                    writer.write(value, from, i - from);
+                    writer.write(escaped);
+                    from = i + 1;
+                }
+            }
+            writer.write(value, from, value.length() - from);
+            return this;
+        }
+
+        private void endRow() throws IOException {
+            writer.write('\n');
+            rowStarted = false;
+            rows++;
+        }
+
+        private TsvFile raw(String value) throws IOException {
+            separate();
+            writer.write(value);
+            return this;
+        }
+
+        private void separate() throws IOException {
+            if (writer == null) {
+                // дописываем: файл, не загруженный из-за ошибки, остается и уйдет в базу со следующей загрузкой
+                writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND);
+                pending = true;
+            }
+            if (rowStarted) {
+                writer.write('\t');
+            }
+            rowStarted = true;
+        }
+
+        private String escape(char c) {
+            switch (c) {
+                case '\\':
+                    return "\\\\";
+                case '\t':
+                    return "\\t";
+                case '\n':
+                    return "\\n";
+                case '\r':
+                    return "\\r";
+                case '\0':
+                    return "\\0";
+                default:
+                    return null;
+            }
+        }
+
+        /**
+         * Файл остается в очереди на загрузку, пока LOAD DATA не завершится успешно: после ошибки
+         * следующий вызов загрузит его снова, даже если новых строк не было.
+         */
+        private void load() throws IOException, SQLException {
+            if (!pending) return;
+            if (writer != null) {
+                writer.close();
+                writer = null;
+            }
+            long start = System.nanoTime();
+            long loaded = dbConnector.loadDataFile(path, table, columns, replace);
+            long nanos = System.nanoTime() - start;
+            logger.info(String.format("%d строк загружено в %s за %d мс (%.0f строк/с)", loaded, table,
+                    nanos / 1_000_000, loaded / Math.max(nanos / 1e9, 1e-9)));
+            Files.delete(path);
+            rows = 0;
+            pending = false;
+        }
+    }
+}
@@ -2,108 +2,105 @@ package com.search.service;
 
 import com.search.model.*;
 import com.search.model.enums.Status;
+import com.search.scanning.CrawlerSettings;
 import org.apache.logging.log4j.Logger;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
-import org.hibernate.boot.Metadata;
-import org.hibernate.boot.MetadataSources;
-import org.hibernate.boot.registry.StandardServiceRegistry;
-import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
 import org.springframework.stereotype.Service;
+import javax.persistence.EntityManagerFactory;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
+import javax.sql.DataSource;
+import java.nio.file.Path;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Доступ к базе. JDBC-запросы берут соединение из пула spring.datasource (HikariCP) на время одного вызова,
+ * сущности Site и Field читаются через общий SessionFactory Spring, поэтому поиск и запись индекса
+ * идут параллельно на разных соединениях.
+ */
 @Service
 public class DBConnector {
 
-    private SessionFactory sessionFactory = null;
-    private Session session = null;
-    boolean stop = false;
-    private Connection connection;
+    private final SessionFactory sessionFactory;
+    private final DataSource dataSource;
+    private volatile boolean stop = false;
     private final Logger logger;
-    private final String dbUser = "root";
-    private final String url = "jdbc:mysql://localhost:3306/search_engine?serverTimezone=UTC&useSSL=false&allowPublicKeyRetrieval=true";
-    private final String dbPass = "testtest55";
+    private final BatchWriter batchWriter;
+    private final Map<Integer, Site> sitesById = new ConcurrentHashMap<>();
 
 
-    public DBConnector(Logger logger) {
+    public DBConnector(Logger logger, CrawlerSettings crawlerSettings, DataSource dataSource,
+                       EntityManagerFactory entityManagerFactory) {
         this.logger = logger;
+        this.dataSource = dataSource;
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        this.batchWriter = new BatchWriter(dataSource, crawlerSettings.getWriteChunkSize(),
+                crawlerSettings.getWriteRetries(), crawlerSettings.getWriteRetryBackoff(), logger);
     }
 
-    public Connection getConnection() {
-        if (connection == null) {
-            try {
+    public Connection getConnection() throws SQLException {
+        return dataSource.getConnection();
+    }
 
-                connection = DriverManager.getConnection(url + "&user=" + dbUser + "&password=" + dbPass);
-            } catch (SQLException throwables) {
-                throwables.printStackTrace();
-            }
+    private void execute(String sql) throws SQLException {
+        try (Connection connection = getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(sql);
         }
-        return connection;
     }
 
-    public synchronized void saveAllIndexes(List<Index> indexList) throws SQLException {
-        String insert = "INSERT INTO indexes (_rank, lemma_id, page_id) VALUES ";
-        int progress = 0;
-        StringBuilder sql = new StringBuilder();
-        sql.append(insert);
-        if (indexList.size() == 0) return;
-        for (Index index : indexList) {
-            String values = "(" + index.getRank() + ", " + index.getLemmaId() + ", " + index.getPageId() + "), ";
-            sql.append(values);
-            progress++;
-            if (progress % 10_000 == 0) {
-                logger.info(String.format("Подготовка запроса вставки индексов %s из %s", progress, indexList.size()));
+    private int queryInt(String sql) throws SQLException {
+        try (Connection connection = getConnection(); Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(sql)) {
+            if (!rs.next()) {
+                return 0;
             }
+            return rs.getInt(1);
         }
-        sql.replace(sql.lastIndexOf(", "), sql.length(), ";");
+    }
 
-        try {
-            getConnection().createStatement().execute(sql.toString());
-        } catch (SQLSyntaxErrorException ex) {
-            logger.warn("Error in sql: " + sql);
-        }
-        logger.info(indexList.size() + " индексов успешно записаны");
+    public BatchWriter getBatchWriter() {
+        return batchWriter;
     }
 
-    public synchronized void saveAllLemms(Map<String, List<Lemma>> lemmaListMap) throws SQLException {
-        String insert = "INSERT INTO lemma (id, frequency, lemma, site_id) VALUES ";
-        int progress = 0;
-        StringBuilder sql = new StringBuilder();
-        sql.append(insert);
-        if (lemmaListMap.size() == 0) return;
-
-        for (List<Lemma> lemmaList : lemmaListMap.values()) {
-            for (Lemma lemma : lemmaList) {
-                if (lemma.getLemma().equals("")) continue;
-                String values = "(" + lemma.getId() + ", "+ lemma.getFrequency() + ", " + "'" + lemma.getLemma() + "'" + ", " + lemma.getSiteId() + "), ";
-                sql.append(values);
-                progress++;
-                if (progress % 1_000 == 0) {
-                    logger.info(String.format("Подготовка запроса вставки лемм %s из %s", progress, lemmaListMap.size()));
-                }
-            }
-        }
-        sql.replace(sql.lastIndexOf(", "), sql.length(), ";");
+    public void saveAllIndexes(PostingBuffer postings) throws SQLException {
+        String insert = "INSERT INTO indexes (_rank, lemma_id, page_id) VALUES (?, ?, ?)";
+        batchWriter.write("indexes", insert, postings.size(), (statement, i) -> {
+            statement.setFloat(1, postings.getRank(i));
+            statement.setInt(2, postings.getTermId(i));
+            statement.setInt(3, postings.getPageId(i));
+        });
+    }
 
-        try {
-            getConnection().createStatement().execute(sql.toString());
-        } catch (SQLSyntaxErrorException ex) {
-            logger.warn("Error in sql: " + sql);
-        }
-        logger.info(lemmaListMap.size() + " лемм успешно записаны");
+    public void saveAllLemms(List<Lemma> lemmaList) throws SQLException {
+        String insert = "INSERT INTO lemma (id, frequency, lemma, site_id) VALUES (?, ?, ?, ?)";
+        batchWriter.write("lemma", insert, lemmaList.size(), (statement, i) -> {
+            Lemma lemma = lemmaList.get(i);
+            statement.setInt(1, lemma.getId());
+            statement.setInt(2, lemma.getFrequency());
+            statement.setString(3, lemma.getLemma());
+            statement.setInt(4, lemma.getSiteId());
+        });
     }
 
-    public synchronized void saveAllPages(Set<Page> pages) throws SQLException {
+    public void saveAllPages(Set<Page> pages) throws SQLException {
         String insert = "INSERT INTO page (id, code, content, path, site_id) VALUES (?, ?, ?, ?, ?)";
         int progress = 0;
         try (
+                Connection connection = getConnection();
                 PreparedStatement statement = connection.prepareStatement(insert)
         ) {
             int i = 0;
@@ -130,145 +127,451 @@ public class DBConnector {
         }
     }
 
-    public synchronized int getCountPagesBySite(Site site) throws SQLException {
-        String select = "SELECT COUNT(*) FROM page WHERE site_id = " + site.getId();
-        ResultSet rs = getConnection().createStatement().executeQuery(select);
-        if (!rs.next()) {
-            return 0;
+    public void createPageStateTable() throws SQLException {
+        String create = "CREATE TABLE IF NOT EXISTS page_state (" +
+                "page_id INT NOT NULL PRIMARY KEY, " +
+                "etag VARCHAR(255), " +
+                "last_modified VARCHAR(64), " +
+                "content_hash BIGINT NOT NULL, " +
+                "duplicate_of INT)";
+        execute(create);
+    }
+
+    /**
+     * Текст и заголовок страницы, извлеченные при индексации: поиск берет их отсюда и не разбирает HTML.
+     */
+    public void createPageTextTable() throws SQLException {
+        String create = "CREATE TABLE IF NOT EXISTS page_text (" +
+                "page_id INT NOT NULL PRIMARY KEY, " +
+                "title TEXT, " +
+                "text MEDIUMTEXT)";
+        execute(create);
+    }
+
+    public void savePageTexts(Collection<Page> pages) throws SQLException {
+        if (pages.isEmpty()) return;
+        String insert = "INSERT INTO page_text (page_id, title, text) VALUES (?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE title = VALUES(title), text = VALUES(text)";
+        try (Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(insert)) {
+            int i = 0;
+            for (Page page : pages) {
+                statement.setInt(1, page.getId());
+                statement.setString(2, page.getTitle() == null ? "" : page.getTitle());
+                statement.setString(3, page.getText() == null ? "" : page.getText());
+                statement.addBatch();
+                if (++i % 1000 == 0) {
+                    statement.executeBatch();
+                }
+            }
+            statement.executeBatch();
+        }
+    }
+
+    /**
+     * Словарь лемм: постоянный номер леммы, на который ссылаются indexes.lemma_id.
+     */
+    public void createTermTable() throws SQLException {
+        String create = "CREATE TABLE IF NOT EXISTS term (" +
+                "id INT NOT NULL PRIMARY KEY, " +
+                "lemma VARCHAR(255) NOT NULL)";
+        execute(create);
+    }
+
+    public Map<Integer, String> getTerms() throws SQLException {
+        try (Connection connection = getConnection(); Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT id, lemma FROM term ORDER BY id")) {
+            Map<Integer, String> terms = new LinkedHashMap<>();
+            while (rs.next()) {
+                terms.put(rs.getInt("id"), rs.getString("lemma"));
+            }
+            return terms;
+        }
+    }
+
+    /**
+     * Повторная запись уже сохраненной леммы пропускается, поэтому прерванное сохранение словаря можно повторить целиком.
+     */
+    public void saveTerms(Map<Integer, String> terms) throws SQLException {
+        List<Map.Entry<Integer, String>> rows = new ArrayList<>(terms.entrySet());
+        String insert = "INSERT IGNORE INTO term (id, lemma) VALUES (?, ?)";
+        batchWriter.write("term", insert, rows.size(), (statement, i) -> {
+            statement.setInt(1, rows.get(i).getKey());
+            statement.setString(2, rows.get(i).getValue());
+        });
+    }
+
+    /**
+     * Строки таблицы lemma: сайт, лемма и номер строки, чтобы частоты новых страниц добавлялись к ним.
+     */
+    public List<Lemma> getLemmaRows() throws SQLException {
+        try (Connection connection = getConnection(); Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT id, lemma, frequency, site_id FROM lemma")) {
+            List<Lemma> rows = new ArrayList<>();
+            while (rs.next()) {
+                rows.add(new Lemma(rs.getInt("id"), rs.getString("lemma"), rs.getInt("frequency"), rs.getInt("site_id")));
+            }
+            return rows;
+        }
+    }
+
+    public void updateLemmaFrequencies(List<Lemma> lemmas) throws SQLException {
+        String update = "UPDATE lemma SET frequency = frequency + ? WHERE id = ?";
+        batchWriter.write("lemma", update, lemmas.size(), (statement, i) -> {
+            statement.setInt(1, lemmas.get(i).getFrequency());
+            statement.setInt(2, lemmas.get(i).getId());
+        });
+    }
+
+    public Map<String, PageState> getPageStates(int siteId) throws SQLException {
+        String select = "SELECT p.id, p.path, s.etag, s.last_modified, s.content_hash, s.duplicate_of FROM page p " +
+                "LEFT JOIN page_state s ON s.page_id = p.id WHERE p.site_id = " + siteId;
+        try (Connection connection = getConnection(); Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(select)) {
+            Map<String, PageState> states = new HashMap<>();
+            while (rs.next()) {
+                String path = unquote(rs.getString("path"));
+                PageState state = new PageState(rs.getInt("id"), path, rs.getString("etag"),
+                        rs.getString("last_modified"), rs.getLong("content_hash"));
+                state.setDuplicateOf(rs.getInt("duplicate_of"));
+                states.put(path, state);
+            }
+            return states;
+        }
+    }
+
+    public void savePageStates(Collection<PageState> states) throws SQLException {
+        if (states.isEmpty()) return;
+        String insert = "INSERT INTO page_state (page_id, etag, last_modified, content_hash, duplicate_of) " +
+                "VALUES (?, ?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE etag = VALUES(etag), last_modified = VALUES(last_modified), " +
+                "content_hash = VALUES(content_hash), duplicate_of = VALUES(duplicate_of)";
+        try (Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(insert)) {
+            for (PageState state : states) {
+                statement.setInt(1, state.getPageId());
+                statement.setString(2, state.getEtag());
+                statement.setString(3, state.getLastModified());
+                statement.setLong(4, state.getContentHash());
+                if (state.getDuplicateOf() > 0) {
+                    statement.setInt(5, state.getDuplicateOf());
+                } else {
+                    statement.setNull(5, Types.INTEGER);
+                }
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    public String getPageContent(int pageId) throws SQLException {
+        String select = "SELECT content FROM page WHERE id = " + pageId;
+        try (Connection connection = getConnection(); Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(select)) {
+            if (!rs.next()) {
+                return "";
+            }
+            return unquote(rs.getString("content"));
+        }
+    }
+
+    public void updatePages(Collection<Page> pages) throws SQLException {
+        if (pages.isEmpty()) return;
+        String update = "UPDATE page SET code = ?, content = ? WHERE id = ?";
+        try (Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(update)) {
+            for (Page page : pages) {
+                statement.setInt(1, page.getCode());
+                statement.setString(2, "'" + page.getContent() + "'");
+                statement.setInt(3, page.getId());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+        logger.info(pages.size() + " измененных страниц обновлено");
+    }
+
+    /**
+     * Удаляет индексы страниц и в той же транзакции уменьшает частоты их лемм: страница перестает
+     * учитываться в lemma.frequency, и повторная индексация не накручивает частоты.
+     */
+    public void deleteIndexesByPages(Collection<Integer> pageIds) throws SQLException {
+        if (pageIds.isEmpty()) return;
+        String ids = joinIds(pageIds);
+        executeInTransaction(decrementFrequencies(ids), "DELETE FROM indexes WHERE page_id IN (" + ids + ")");
+    }
+
+    public void deletePages(Collection<Integer> pageIds) throws SQLException {
+        if (pageIds.isEmpty()) return;
+        String ids = joinIds(pageIds);
+        executeInTransaction(decrementFrequencies(ids),
+                "DELETE FROM indexes WHERE page_id IN (" + ids + ")",
+                "DELETE FROM page_state WHERE page_id IN (" + ids + ")",
+                "DELETE FROM page_text WHERE page_id IN (" + ids + ")",
+                "DELETE FROM page WHERE id IN (" + ids + ")");
+        logger.info(pageIds.size() + " удаленных с сайтов страниц исключено из индекса");
+    }
+
+    /**
+     * Частота леммы - число страниц сайта с ней, поэтому из частоты вычитается число удаляемых страниц,
+     * на которые ссылается ее номер в indexes.lemma_id.
+     */
+    private static String decrementFrequencies(String pageIds) {
+        return "UPDATE lemma l JOIN (" +
+                "SELECT p.site_id, t.lemma, COUNT(*) AS pages FROM indexes i " +
+                "JOIN page p ON p.id = i.page_id JOIN term t ON t.id = i.lemma_id " +
+                "WHERE i.page_id IN (" + pageIds + ") GROUP BY p.site_id, t.lemma) d " +
+                "ON d.site_id = l.site_id AND d.lemma = l.lemma " +
+                "SET l.frequency = IF(l.frequency > d.pages, l.frequency - d.pages, 0)";
+    }
+
+    private void executeInTransaction(String... statements) throws SQLException {
+        try (Connection connection = getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                for (String sql : statements) {
+                    statement.execute(sql);
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException ex) {
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackEx) {
+                    ex.addSuppressed(rollbackEx);
+                }
+                throw ex;
+            } finally {
+                try {
+                    connection.setAutoCommit(autoCommit);
+                } catch (SQLException ignored) {
+                    // соединение оборвано, пул его закроет и выдаст новое
+                }
+            }
+        }
+    }
+
+    /**
+     * Разрешена ли на сервере загрузка файлов клиента командой LOAD DATA LOCAL INFILE.
+     */
+    public boolean isLocalInfileEnabled() throws SQLException {
+        return queryInt("SELECT @@GLOBAL.local_infile") == 1;
+    }
+
+    /**
+     * Загружает TSV-файл в таблицу, columns - список столбцов в скобках и, если нужно, SET. Проверки
+     * уникальности и внешних ключей на время загрузки отключаются. Возвращает число загруженных строк.
+     */
+    public long loadDataFile(Path file, String table, String columns, boolean replace) throws SQLException {
+        String path = file.toAbsolutePath().toString().replace('\\', '/').replace("'", "\\'");
+        String load = "LOAD DATA LOCAL INFILE '" + path + "' " + (replace ? "REPLACE " : "") +
+                "INTO TABLE " + table + " CHARACTER SET utf8mb4 " + columns;
+        try (Connection connection = getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("SET unique_checks = 0, foreign_key_checks = 0");
+            try {
+                return statement.executeLargeUpdate(load);
+            } finally {
+                statement.execute("SET unique_checks = 1, foreign_key_checks = 1");
+            }
+        }
+    }
+
+    /**
+     * Удаляет вторичные индексы таблицы и возвращает их описания для ALTER TABLE ... ADD. Индексы по выражениям
+     * и индексы, которые нельзя удалить (например, нужные внешнему ключу), остаются на месте.
+     */
+    public List<String> dropSecondaryIndexes(String table) throws SQLException {
+        String select = "SELECT INDEX_NAME, NON_UNIQUE, INDEX_TYPE, COLUMN_NAME, SUB_PART FROM information_schema.STATISTICS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = '" + table + "' AND INDEX_NAME <> 'PRIMARY' " +
+                "ORDER BY INDEX_NAME, SEQ_IN_INDEX";
+        Map<String, StringBuilder> definitions = new LinkedHashMap<>();
+        Set<String> skipped = new HashSet<>();
+        List<String> dropped = new ArrayList<>();
+        try (Connection connection = getConnection(); Statement statement = connection.createStatement()) {
+            try (ResultSet rs = statement.executeQuery(select)) {
+                while (rs.next()) {
+                    String name = rs.getString("INDEX_NAME");
+                    String column = rs.getString("COLUMN_NAME");
+                    if (column == null) {
+                        skipped.add(name);
+                        continue;
+                    }
+                    StringBuilder definition = definitions.get(name);
+                    if (definition == null) {
+                        String kind = "FULLTEXT".equals(rs.getString("INDEX_TYPE")) ? "FULLTEXT INDEX"
+                                : rs.getInt("NON_UNIQUE") == 0 ? "UNIQUE INDEX" : "INDEX";
+                        definition = new StringBuilder(kind).append(" `").append(name).append("` (");
+                        definitions.put(name, definition);
+                    } else {
+                        definition.append(", ");
+                    }
+                    definition.append('`').append(column).append('`');
+                    int subPart = rs.getInt("SUB_PART");
+                    if (!rs.wasNull()) {
+                        definition.append('(').append(subPart).append(')');
+                    }
+                }
+            }
+            for (Map.Entry<String, StringBuilder> index : definitions.entrySet()) {
+                if (skipped.contains(index.getKey())) continue;
+                try {
+                    statement.execute("ALTER TABLE " + table + " DROP INDEX `" + index.getKey() + "`");
+                    dropped.add(index.getValue().append(')').toString());
+                } catch (SQLException ex) {
+                    logger.warn("Индекс " + index.getKey() + " таблицы " + table + " оставлен: " + ex.getMessage());
+                }
+            }
         }
-        return rs.getInt(1);
+        return dropped;
+    }
+
+    public void addIndexes(String table, List<String> definitions) throws SQLException {
+        if (definitions.isEmpty()) return;
+        execute("ALTER TABLE " + table + " ADD " + String.join(", ADD ", definitions));
     }
 
-    public synchronized int getCountLemmasBySite(Site site) throws SQLException {
-        String select = "SELECT COUNT(*) FROM lemma WHERE site_id = " + site.getId();
-        ResultSet rs = getConnection().createStatement().executeQuery(select);
-        if (!rs.next()) {
-            return 0;
+    public int getMaxId(String table) throws SQLException {
+        return queryInt("SELECT MAX(id) FROM " + table);
+    }
+
+    private String joinIds(Collection<Integer> ids) {
+        StringBuilder joined = new StringBuilder();
+        for (Integer id : ids) {
+            if (joined.length() > 0) joined.append(", ");
+            joined.append(id);
         }
-        return rs.getInt(1);
+        return joined.toString();
     }
 
+    private String unquote(String value) {
+        if (value != null && value.length() >= 2 && value.startsWith("'") && value.endsWith("'")) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    public int getCountPagesBySite(Site site) throws SQLException {
+        return queryInt("SELECT COUNT(*) FROM page WHERE site_id = " + site.getId());
+    }
+
+    public int getCountLemmasBySite(Site site) throws SQLException {
+        return queryInt("SELECT COUNT(*) FROM lemma WHERE site_id = " + site.getId());
+    }
+
+    /**
+     * Сайты читаются из базы один раз: в выдаче нужны только адрес и имя, updateSite сбрасывает запись сайта.
+     */
     public Site getSiteById(int siteId) throws SQLException {
+        Site cached = sitesById.get(siteId);
+        if (cached != null) return cached;
         String select = "SELECT * FROM site WHERE id = " + siteId;
-        ResultSet rs = getConnection().createStatement().executeQuery(select);
-        if (!rs.next()) {
-            return null;
+        try (Connection connection = getConnection(); Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(select)) {
+            if (!rs.next()) {
+                return null;
+            }
+            Status status = Status.valueOf(rs.getString("status"));
+            String lastError = rs.getString("last_error");
+            String url = rs.getString("url");
+            String name = rs.getString("name");
+            Site site = new Site(status, lastError, url, name);
+            sitesById.put(siteId, site);
+            return site;
         }
-        Status status = Status.valueOf(rs.getString("status"));
-        String lastError = rs.getString("last_error");
-        String url = rs.getString("url");
-        String name = rs.getString("name");
-        return new Site(status, lastError, url, name);
-    }
-
-    public List<Page> getPagesByLemma(String lemmaString) throws SQLException {
-        List<Page> pagesByLemma = new ArrayList<>();
-        List<Lemma> lemmaList = getLemmaList(lemmaString);
-        if(lemmaList == null) return new ArrayList<>();
-        if (lemmaList.isEmpty()) return new ArrayList<>();
-
-        StringBuilder lemmaIdSet = new StringBuilder();
-        for (Lemma lemma : lemmaList) {
-            lemmaIdSet.append("lemma_id = ");
-            lemmaIdSet.append(lemma.getId());
-            if (!lemma.equals(lemmaList.get(lemmaList.size() - 1))) lemmaIdSet.append(" OR ");
+    }
+
+    /**
+     * Страницы, в индексе которых есть все леммы с данными номерами из словаря, одним запросом:
+     * номер страницы, сайт и релевантность - сумма рангов лемм. Отсортированы по убыванию релевантности.
+     * Если siteId задан, учитываются только страницы этого сайта.
+     */
+    public List<PageHit> getPageHits(Collection<Integer> termIds, Integer siteId) throws SQLException {
+        List<PageHit> hits = new ArrayList<>();
+        if (termIds.isEmpty() || termIds.contains(0)) return hits;
+        String select = "SELECT i.page_id, p.site_id, SUM(i._rank) AS relevance " +
+                "FROM `indexes` i JOIN page p ON p.id = i.page_id " +
+                "WHERE i.lemma_id IN (" + joinIds(termIds) + ") " +
+                (siteId != null ? "AND p.site_id = ? " : "") +
+                "GROUP BY i.page_id, p.site_id " +
+                "HAVING COUNT(DISTINCT i.lemma_id) = " + new HashSet<>(termIds).size() + " " +
+                "ORDER BY relevance DESC, i.page_id";
+        try (Connection connection = getConnection(); PreparedStatement statement = connection.prepareStatement(select)) {
+            if (siteId != null) statement.setInt(1, siteId);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    hits.add(new PageHit(rs.getInt("page_id"), rs.getInt("site_id"), rs.getFloat("relevance")));
+                }
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Страницы для выдачи одним запросом: текст и заголовок берутся из page_text, HTML загружается и разбирается
+     * только для страниц, проиндексированных до появления этой таблицы.
+     */
+    public Map<Integer, Page> getPagesByIds(Collection<Integer> pageIds) throws SQLException {
+        Map<Integer, Page> pages = new HashMap<>();
+        if (pageIds.isEmpty()) return pages;
+        String select = "SELECT p.id, p.path, p.code, p.site_id, t.title, t.text, " +
+                "IF(t.page_id IS NULL, p.content, NULL) AS content " +
+                "FROM page p LEFT JOIN page_text t ON t.page_id = p.id WHERE p.id IN (" + joinIds(pageIds) + ")";
+        try (Connection connection = getConnection(); Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(select)) {
+            while (rs.next()) {
+                int id = rs.getInt("id");
+                String content = rs.getString("content");
+                Page page = new Page(id, unquote(rs.getString("path")), rs.getInt("code"), content, rs.getInt("site_id"));
+                if (content == null) {
+                    page.setTitle(rs.getString("title"));
+                    page.setText(rs.getString("text"));
+                } else {
+                    Document document = Jsoup.parse(unquote(content));
+                    page.setTitle(document.title());
+                    page.setText(document.text());
+                }
+                pages.put(id, page);
+            }
         }
-        String select = "SELECT page_id FROM `indexes` WHERE " + lemmaIdSet.toString();
-        ResultSet rs = getConnection().createStatement().executeQuery(select);
+        return pages;
+    }
 
-        if (!rs.next()) {
-            return new ArrayList<>();
+    public void updateSite(Site site) {
+        try (Session session = sessionFactory.openSession()) {
+            Transaction tx = session.beginTransaction();
+            session.saveOrUpdate(site);
+            tx.commit();
         }
-        do {
-            int id = rs.getInt("page_id");
-            pagesByLemma.add(getPageById(id));
-        } while (rs.next());
-        return pagesByLemma;
+        sitesById.remove(site.getId());
     }
 
-    private Page getPageById(int id) throws SQLException {
-        String select = "SELECT * FROM page WHERE id = " + id;
-        ResultSet rs = getConnection().createStatement().executeQuery(select);
 
-        if (!rs.next()) {
-            return null;
+    public float getWeightFieldBySelector(String selector) {
+        try (Session session = sessionFactory.openSession()) {
+            CriteriaBuilder builder = session.getCriteriaBuilder();
+            CriteriaQuery<Field> query = builder.createQuery(Field.class);
+            Root<Field> root = query.from(Field.class);
+            query.select(root).where(builder.equal(root.get("selector"), selector));
+            List<Field> fieldList = session.createQuery(query).getResultList();
+            return fieldList.get(0).getWeight();
         }
-        String path = rs.getString("path");
-        int code = rs.getInt("code");
-        String content = rs.getString("content");
-        int siteId = rs.getInt("site_id");
-        return new Page(id, path, code, content, siteId);
-    }
-
-    private List<Lemma> getLemmaList(String lemmaString) throws SQLException {
-        String select = "SELECT * FROM lemma WHERE lemma = '" + lemmaString + "'";
-        ResultSet rs = getConnection().createStatement().executeQuery(select);
-        if (!rs.next()) {
-            return null;
+    }
+
+    public List<Site> getSites() {
+        try (Session session = sessionFactory.openSession()) {
+            CriteriaBuilder siteBuilder = session.getCriteriaBuilder();
+            CriteriaQuery<Site> siteQuery = siteBuilder.createQuery(Site.class);
+            Root<Site> siteRoot = siteQuery.from(Site.class);
+            siteQuery.select(siteRoot);
+            return session.createQuery(siteQuery).getResultList();
+        }
+    }
+
+    public void deleteSiteIndexes() throws SQLException {
+        try (Connection connection = getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("TRUNCATE TABLE page");
+            statement.execute("TRUNCATE TABLE lemma");
+            statement.execute("TRUNCATE TABLE indexes");
+            statement.execute("TRUNCATE TABLE page_state");
+            statement.execute("TRUNCATE TABLE page_text");
         }
-        List<Lemma> lemmaList = new ArrayList<>();
-        do {
-            int id = rs.getInt("id");
-            int frequency = rs.getInt("frequency");
-            int siteId = rs.getInt("site_id");
-            Lemma lemma = new Lemma(id, lemmaString, frequency, siteId);
-            lemmaList.add(lemma);
-        }while (rs.next());
-        return lemmaList;
-    }
-
-    public synchronized void getSession() {
-        StandardServiceRegistry registry = new StandardServiceRegistryBuilder().configure("hibernate.cfg.xml").build();
-        Metadata metadata = new MetadataSources(registry).getMetadataBuilder().build();
-        sessionFactory = metadata.getSessionFactoryBuilder().build();
-        session = sessionFactory.openSession();
-    }
-
-    public synchronized void closeSession() {
-        session.close();
-        sessionFactory.close();
-    }
-
-    public synchronized void updateSite(Site site) {
-        getSession();
-        Transaction tx = session.beginTransaction();
-        session.saveOrUpdate(site);
-        tx.commit();
-        closeSession();
-    }
-
-
-    public synchronized float getWeightFieldBySelector(String selector) {
-        getSession();
-        CriteriaBuilder builder = session.getCriteriaBuilder();
-        CriteriaQuery<Field> query = builder.createQuery(Field.class);
-        Root<Field> root = query.from(Field.class);
-        query.select(root).where(builder.equal(root.get("selector"), selector));
-        List<Field> fieldList = session.createQuery(query).getResultList();
-        closeSession();
-        return fieldList.get(0).getWeight();
-    }
-
-    public synchronized List<Site> getSites() {
-        getSession();
-        CriteriaBuilder siteBuilder = session.getCriteriaBuilder();
-        CriteriaQuery<Site> siteQuery = siteBuilder.createQuery(Site.class);
-        Root<Site> siteRoot = siteQuery.from(Site.class);
-        siteQuery.select(siteRoot);
-        List<Site> sites = session.createQuery(siteQuery).getResultList();
-        closeSession();
-        return sites;
-    }
-
-    public synchronized void deleteSiteIndexes() {
-        getSession();
-        Transaction tx = session.getTransaction();
-        tx.begin();
-        session.createSQLQuery("TRUNCATE TABLE page").executeUpdate();
-        session.createSQLQuery("TRUNCATE TABLE lemma").executeUpdate();
-        session.createSQLQuery("TRUNCATE TABLE indexes").executeUpdate();
-        tx.commit();
-        closeSession();
     }
 
     public boolean isStop() {
@@ -0,0 +1,185 @@
+package com.search.service;
+
+import com.search.scanning.CrawlerSettings;
+import com.search.scanning.SeenUrlSet;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Находит почти одинаковые страницы по SimHash текста. Отпечатки хранятся отдельно для каждого сайта
+ * и разбиты на полосы: страницы на расстоянии Хэмминга не больше k обязательно совпадают
+ * хотя бы в одной из k + 1 полос, поэтому сравнивать приходится только с кандидатами из этих полос.
+ */
+@Service
+public class DuplicateDetector {
+
+    private static final int SHINGLE = 3;
+    private static final int MIN_WORDS = 20;
+
+    private final CrawlerSettings crawlerSettings;
+    private final Map<Integer, SiteIndex> sites = new HashMap<>();
+
+    public DuplicateDetector(CrawlerSettings crawlerSettings) {
+        this.crawlerSettings = crawlerSettings;
+    }
+
+    public boolean isEnabled() {
+        return crawlerSettings.getDuplicateDistance() >= 0;
+    }
+
+    /**
+     * Возвращает id уже проиндексированной страницы, дублем которой является текст, или 0. Если дубля нет,
+     * страница в том же вызове регистрируется как оригинал: из двух почти одинаковых страниц, которые
+     * разбираются одновременно, проиндексирована будет только одна.
+     */
+    public synchronized int findOrRegister(int siteId, long fingerprint, int pageId) {
+        SiteIndex index = sites.computeIfAbsent(siteId, id -> new SiteIndex(crawlerSettings.getDuplicateDistance() + 1));
+        Entry entry = index.find(fingerprint, crawlerSettings.getDuplicateDistance());
+        if (entry == null) {
+            index.add(new Entry(fingerprint, pageId));
+            return 0;
+        }
+        index.skippedPages++;
+        entry.duplicates++;
+        index.savedPostings += entry.postings;
+        return entry.pageId;
+    }
+
+    /**
+     * Число индексов зарегистрированной страницы, известное только после разбора ее лемм. Дубли, найденные
+     * пока оригинал еще разбирался, засчитываются в сэкономленные индексы здесь.
+     */
+    public synchronized void setPostings(int siteId, int pageId, int postings) {
+        SiteIndex index = sites.get(siteId);
+        Entry entry = index == null ? null : index.pages.get(pageId);
+        if (entry == null) return;
+        index.savedPostings += (long) entry.duplicates * (postings - entry.postings);
+        entry.postings = postings;
+    }
+
+    /**
+     * Снимает регистрацию страницы, разбор которой не удался, чтобы ее дубли не пропускались.
+     */
+    public synchronized void unregister(int siteId, int pageId) {
+        SiteIndex index = sites.get(siteId);
+        if (index != null) index.remove(pageId);
+    }
+
+    public synchronized int getSkippedPages(int siteId) {
+        SiteIndex index = sites.get(siteId);
+        return index == null ? 0 : index.skippedPages;
+    }
+
+    public synchronized long getSavedPostings(int siteId) {
+        SiteIndex index = sites.get(siteId);
+        return index == null ? 0 : index.savedPostings;
+    }
+
+    public synchronized void clear() {
+        sites.clear();
+    }
+
+    /**
+     * SimHash по шинглам из трех слов. Для слишком коротких текстов возвращает 0 - такие страницы не сравниваются.
+     */
+    public long fingerprint(String text) {
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+            } else if (word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if (words.size() < MIN_WORDS) return 0;
+        int[] weights = new int[64];
+        StringBuilder shingle = new StringBuilder();
+        for (int i = 0; i + SHINGLE <= words.size(); i++) {
+            shingle.setLength(0);
+            for (int j = i; j < i + SHINGLE; j++) {
+                shingle.append(words.get(j)).append(' ');
+            }
+            long hash = SeenUrlSet.fingerprint(shingle.toString());
+            for (int bit = 0; bit < 64; bit++) {
+                weights[bit] += ((hash >>> bit) & 1) == 1 ? 1 : -1;
+            }
+        }
+        long fingerprint = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) fingerprint |= 1L << bit;
+        }
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+
+    private static class Entry {
+        private final long fingerprint;
+        private final int pageId;
+        private int postings = 0;
+        private int duplicates = 0;
+
+        Entry(long fingerprint, int pageId) {
+            this.fingerprint = fingerprint;
+            this.pageId = pageId;
+        }
+    }
+
+    private static class SiteIndex {
+        private final int bands;
+        private final int bandBits;
+        private final List<Map<Long, List<Entry>>> tables = new ArrayList<>();
+        private final Map<Integer, Entry> pages = new HashMap<>();
+        private int skippedPages = 0;
+        private long savedPostings = 0;
+
+        SiteIndex(int bands) {
+            this.bands = Math.max(1, Math.min(bands, 64));
+            this.bandBits = 64 / this.bands;
+            for (int i = 0; i < this.bands; i++) {
+                tables.add(new HashMap<>());
+            }
+        }
+
+        void add(Entry entry) {
+            pages.put(entry.pageId, entry);
+            for (int band = 0; band < bands; band++) {
+                tables.get(band).computeIfAbsent(bandKey(entry.fingerprint, band), k -> new ArrayList<>()).add(entry);
+            }
+        }
+
+        void remove(int pageId) {
+            Entry entry = pages.remove(pageId);
+            if (entry == null) return;
+            for (int band = 0; band < bands; band++) {
+                List<Entry> candidates = tables.get(band).get(bandKey(entry.fingerprint, band));
+                if (candidates != null) candidates.remove(entry);
+            }
+        }
+
+        Entry find(long fingerprint, int distance) {
+            for (int band = 0; band < bands; band++) {
+                List<Entry> candidates = tables.get(band).get(bandKey(fingerprint, band));
+                if (candidates == null) continue;
+                for (Entry candidate : candidates) {
+                    if (Long.bitCount(candidate.fingerprint ^ fingerprint) <= distance) {
+                        return candidate;
+                    }
+                }
+            }
+            return null;
+        }
+
+        private long bandKey(long fingerprint, int band) {
+            int shift = band * bandBits;
+            int width = band == bands - 1 ? 64 - shift : bandBits;
+            long mask = width == 64 ? -1L : (1L << width) - 1;
+            return (fingerprint >>> shift) & mask;
+        }
+    }
+}
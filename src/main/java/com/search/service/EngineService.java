@@ -3,78 +3,91 @@ package com.search.service;
 import com.search.model.Page;
 import com.search.model.Site;
 import com.search.model.enums.Status;
+import com.search.scanning.CrawlCheckpoint;
+import com.search.scanning.CrawlTask;
+import com.search.scanning.CrawlerSettings;
 import com.search.scanning.Engine;
+import com.search.scanning.FetchClient;
+import com.search.scanning.PageReader;
+import com.search.scanning.ParsedPage;
 import org.apache.logging.log4j.Logger;
 import org.json.JSONObject;
-import org.jsoup.Connection;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.net.ConnectException;
+import java.nio.file.Path;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.CancellationException;
-import java.util.concurrent.ForkJoinPool;
 
 @Service
 public class EngineService {
-    private ForkJoinPool forkJoinPool = new ForkJoinPool(8);
     private List<Site> sites = new ArrayList<>();
     private boolean success = true;
 
-    private final List<Engine> engines = new ArrayList<>();
+    private Engine engine;
     private final LemmaScanner lemmaScanner;
     private final Storage storage;
     private final DBConnector dbConnector;
     private final Logger logger;
     private final DBConnector fastDBConnector;
+    private final CrawlerSettings crawlerSettings;
+    private final DuplicateDetector duplicateDetector;
+    private final FetchClient fetchClient;
 
 
-    public EngineService(LemmaScanner lemmaScanner, Storage storage, DBConnector dbConnector, Logger logger, DBConnector fastDBConnector) {
+    public EngineService(LemmaScanner lemmaScanner, Storage storage, DBConnector dbConnector, Logger logger,
+                         DBConnector fastDBConnector, CrawlerSettings crawlerSettings,
+                         DuplicateDetector duplicateDetector, FetchClient fetchClient) {
         this.lemmaScanner = lemmaScanner;
         this.storage = storage;
         this.dbConnector = dbConnector;
         this.logger = logger;
         this.fastDBConnector = fastDBConnector;
+        this.crawlerSettings = crawlerSettings;
+        this.duplicateDetector = duplicateDetector;
+        this.fetchClient = fetchClient;
     }
 
     public void startIndexing() {
         if (storage.getIsStarted()) {
             return;
         }
-        resetScanningParams();
         sites = dbConnector.getSites();
-        List<Starter> starters = new ArrayList<>();
+        CrawlCheckpoint checkpoint = new CrawlCheckpoint(Path.of(crawlerSettings.getCheckpointDir()));
+        storage.clearUsedLinks();
+        List<CrawlTask> resumedTasks = loadCheckpoint(checkpoint);
+        boolean resumed = !resumedTasks.isEmpty();
+        resetScanningParams(resumed);
         for (Site site : sites) {
-            Engine engine = new Engine(site, storage);
-            engines.add(engine);
             site.setStatus(Status.INDEXING);
             site.setStatusDateTime(LocalDateTime.now());
             dbConnector.updateSite(site);
-
-            Starter starter = new Starter(engine);
-            starters.add(starter);
+            if (crawlerSettings.isIncremental() || resumed) {
+                try {
+                    storage.loadKnownPages(site.getId());
+                } catch (SQLException ex) {
+                    logger.warn("Не удалось загрузить состояние страниц сайта " + site.getUrl() + ": " + ex.getMessage());
+                }
+            }
         }
+        engine = new Engine(sites, storage, crawlerSettings, checkpoint, fetchClient);
+        engine.setResumedTasks(resumedTasks);
 
-        Listener listener = new Listener(starters);
-
-        starters.forEach(Thread::start);
-        listener.start();
+        Starter starter = new Starter(engine, checkpoint, resumed);
+        starter.start();
         storage.setStarted(false);
     }
 
 
     public boolean stopIndexing() {
-        if (engines.isEmpty()) {
+        if (engine == null) {
             return false;
         }
         storage.setStop(true);
         success = false;
         dbConnector.setStop(true);
-        forkJoinPool.shutdownNow();
+        engine.stop();
         logger.info("Сканирование остановлено, идет сохранение данных");
         List<Site> sites = dbConnector.getSites();
         for (Site site : sites) {
@@ -102,29 +115,17 @@ public class EngineService {
             itContains = true;
         }
         if (!itContains) return false;
-        Connection connection = Jsoup.connect(urlPage).userAgent("Helicon Search Engine 1.0.0").ignoreHttpErrors(true).maxBodySize(0);
-        Connection.Response response;
-        Document doc;
-        int code;
         Optional<Site> optionalSite = dbConnector.getSites().stream().filter(s -> urlPage.contains(s.getUrl())).findAny();
         Site site = optionalSite.orElse(null);
         if (site == null) return false;
-        try {
-            response = connection.execute();
-            code = response.statusCode();
-            doc = connection.get();
-        } catch (ConnectException | RuntimeException ex) {
-            doc = null;
-            code = 404;
-            logger.trace(ex.getMessage());
-        }
-        String content;
-        if (code >= 400) {
-            content = "NULL. ERROR " + code;
-        } else {
-            content = doc.outerHtml();
-        }
-        storage.addPage(new Page(storage.increasePageIdAndGet(), urlPage, code, content, site.getId()));
+        PageReader pageReader = new PageReader(urlPage, fetchClient);
+        pageReader.setMaxBodySize(crawlerSettings.getMaxPageSize());
+        ParsedPage parsedPage = pageReader.read();
+        if (parsedPage.isNotHtml()) return false;
+        Page page = new Page(storage.increasePageIdAndGet(), urlPage, parsedPage.getCode(), parsedPage.getContent(), site.getId());
+        page.setTitle(parsedPage.getTitle());
+        page.setText(parsedPage.getText());
+        storage.addPage(page);
         PageSaver pageSaver = new PageSaver();
         pageSaver.start();
         return true;
@@ -154,6 +155,13 @@ public class EngineService {
             detailed.put("error", site.getLastError());
             detailed.put("pages", sitePages);
             detailed.put("lemmas", siteLemmas);
+            if (engine != null) {
+                detailed.put("pagesPerSecond", engine.getStats().getPagesPerSecond(site.getId()));
+                detailed.put("hostConcurrencyLimit", engine.getHostLimit(site.getId()));
+                detailed.put("hostLatency", engine.getHostLatency(site.getId()));
+            }
+            detailed.put("duplicates", duplicateDetector.getSkippedPages(site.getId()));
+            detailed.put("duplicatePostingsSaved", duplicateDetector.getSavedPostings(site.getId()));
             pages += sitePages;
             lemmas += siteLemmas;
             Status siteStatus = site.getStatus();
@@ -165,6 +173,17 @@ public class EngineService {
         total.put("pages", pages);
         total.put("lemmas", lemmas);
         total.put("isIndexing", isIndexing);
+        if (engine != null) {
+            total.put("truncatedPages", engine.getStats().getTruncatedPages());
+            total.put("notHtmlResources", engine.getStats().getNotHtmlPages());
+            total.put("fetchQueue", engine.getQueueSize());
+        }
+        total.put("analyzeQueue", storage.getAnalyzeQueueSize());
+        total.put("persistQueue", storage.getPersistQueueSize());
+        total.put("morphologyCacheHitRate", lemmaScanner.getMorphologyCache().getHitRate());
+        total.put("morphologyCacheSize", lemmaScanner.getMorphologyCache().size());
+        total.put("dbRowsPerSecond", Math.round(dbConnector.getBatchWriter().getRowsPerSecond()));
+        total.put("dbFailedWrites", dbConnector.getBatchWriter().getFailedWrites());
 
         statistics.put("total", total);
         result.put("result", true);
@@ -172,14 +191,47 @@ public class EngineService {
         return result;
     }
 
-    private void resetScanningParams() {
+    private List<CrawlTask> loadCheckpoint(CrawlCheckpoint checkpoint) {
+        if (!crawlerSettings.isResume() || !checkpoint.exists()) {
+            return List.of();
+        }
+        try {
+            List<CrawlTask> tasks = checkpoint.load(sites, storage.getUsedLinks());
+            if (tasks.isEmpty()) {
+                storage.clearUsedLinks();
+                return tasks;
+            }
+            logger.info("Индексация продолжается с контрольной точки: ссылок в очереди " + tasks.size()
+                    + ", найдено адресов " + storage.getUsedLinks().size());
+            return tasks;
+        } catch (IOException ex) {
+            logger.warn("Не удалось загрузить контрольную точку обхода, индексация начнется заново: " + ex.getMessage());
+            storage.clearUsedLinks();
+            return List.of();
+        }
+    }
+
+    private void resetScanningParams(boolean resumed) {
         success = true;
-        engines.clear();
-        storage.clearUsedLinks();
+        engine = null;
+        duplicateDetector.clear();
         storage.setStop(false);
-        this.forkJoinPool = new ForkJoinPool(8);
         storage.setStarted(true);
-        dbConnector.deleteSiteIndexes();
+        try {
+            dbConnector.createPageStateTable();
+            dbConnector.createPageTextTable();
+            if (!crawlerSettings.isIncremental() && !resumed) {
+                dbConnector.deleteSiteIndexes();
+            }
+            storage.resetIds();
+            if (crawlerSettings.isBulkLoad() && !crawlerSettings.isIncremental() && !resumed) {
+                storage.startBulkLoad();
+            } else {
+                storage.recoverBulkLoad();
+            }
+        } catch (IOException | SQLException ex) {
+            logger.warn(ex.getMessage());
+        }
         dbConnector.setStop(false);
         lemmaScanner.getWeights();
     }
@@ -187,51 +239,44 @@ public class EngineService {
     class Starter extends Thread {
 
         Engine engine;
+        CrawlCheckpoint checkpoint;
+        boolean resumed;
 
-        Starter(Engine engine) {
+        Starter(Engine engine, CrawlCheckpoint checkpoint, boolean resumed) {
             this.engine = engine;
+            this.checkpoint = checkpoint;
+            this.resumed = resumed;
         }
 
         @Override
         public void run() {
-            logger.info("Индексация сайта " + engine.getRootUrl() + " началась");
+            logger.info("Индексация сайтов началась");
             try {
-                forkJoinPool.invoke(engine);
-            } catch (CancellationException ex) {
+                engine.crawl();
+            } catch (InterruptedException ex) {
                 logger.debug(ex.getMessage());
             }
-            if (success) {
-                logger.info("Индексация сайта " + engine.getRootUrl() + " завершилась успешно");
+            if (!success && crawlerSettings.isResume()) {
+                engine.checkpoint();
             }
-
-        }
-    }
-
-    class Listener extends Thread {
-
-        List<Starter> starters;
-
-        Listener(List<Starter> starters) {
-            this.starters = starters;
-        }
-
-        @Override
-        public void run() {
-            starters.forEach(t -> {
-                try {
-                    t.join();
-                } catch (InterruptedException exception) {
-                    exception.printStackTrace();
-                }
-            });
             try {
                 storage.saveAllData();
+                if (success) {
+                    checkpoint.delete();
+                }
+                if (success && crawlerSettings.isIncremental() && !resumed) {
+                    storage.deleteVanishedPages();
+                }
                 if (success) {
                     for (Site site : sites) {
                         site.setStatus(Status.INDEXED);
                         site.setStatusDateTime(LocalDateTime.now());
                         site.setLastError("");
                         dbConnector.updateSite(site);
+                        logger.info("Индексация сайта " + site.getUrl() + " завершилась успешно");
+                        logger.info(String.format("Сайт %s: пропущено %d страниц-дублей, сэкономлено %d индексов",
+                                site.getUrl(), duplicateDetector.getSkippedPages(site.getId()),
+                                duplicateDetector.getSavedPostings(site.getId())));
                     }
                     logger.info("Индексация полностью завершена");
                 }
@@ -240,12 +285,12 @@ public class EngineService {
             }
         }
     }
+
     class PageSaver extends Thread {
         @Override
         public void run() {
             try {
-                storage.createLemmsAndIndexesAndCollect();
-                storage.saveAllData();
+                storage.persist();
             } catch (IOException | SQLException e) {
                 throw new RuntimeException(e);
             }
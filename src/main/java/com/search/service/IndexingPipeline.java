@@ -0,0 +1,197 @@
+package com.search.service;
+
+import com.search.model.Page;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Конвейер индексации после загрузки страницы: разбор и лемматизация в пуле потоков по числу ядер,
+ * затем один поток сохранения, который собирает леммы и индексы и пишет их в базу пачками.
+ * Стадии связаны ограниченными очередями: если разбор или сохранение не успевают, загрузка ждет
+ * места в очереди, но никогда не ждет окончания записи в базу.
+ */
+public class IndexingPipeline {
+
+    private final BlockingQueue<Item> analyzeQueue;
+    private final BlockingQueue<Item> persistQueue;
+    private final ConcurrentSkipListSet<Long> inProgress = new ConcurrentSkipListSet<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final int analyzeWorkers;
+    private final Stage analyzer;
+    private final Stage persister;
+    private final Logger logger = LogManager.getRootLogger();
+    private ExecutorService analyzePool;
+    private ExecutorService persistPool;
+
+    public IndexingPipeline(int analyzeWorkers, int analyzeQueueSize, int persistQueueSize,
+                            Stage analyzer, Stage persister) {
+        this.analyzeWorkers = analyzeWorkers > 0 ? analyzeWorkers : Runtime.getRuntime().availableProcessors();
+        this.analyzeQueue = new ArrayBlockingQueue<>(Math.max(1, analyzeQueueSize));
+        this.persistQueue = new ArrayBlockingQueue<>(Math.max(1, persistQueueSize));
+        this.analyzer = analyzer;
+        this.persister = persister;
+    }
+
+    public synchronized void start() {
+        if (analyzePool != null) return;
+        analyzePool = Executors.newFixedThreadPool(analyzeWorkers, daemonThreads("analyzer-"));
+        for (int i = 0; i < analyzeWorkers; i++) {
+            analyzePool.execute(this::analyze);
+        }
+        persistPool = Executors.newSingleThreadExecutor(daemonThreads("persister-"));
+        persistPool.execute(this::persist);
+    }
+
+    /**
+     * Ставит страницу в очередь разбора, ожидая места, если очередь заполнена.
+     */
+    public void submit(Page page) throws InterruptedException {
+        start();
+        Item item;
+        synchronized (inProgress) {
+            // номер и запись в inProgress под одним монитором: барьер не увидит номер раньше записи
+            item = new Item(sequence.incrementAndGet(), page);
+            inProgress.add(item.sequence);
+        }
+        try {
+            analyzeQueue.put(item);
+        } catch (InterruptedException ex) {
+            done(item);
+            throw ex;
+        }
+    }
+
+    /**
+     * Ждет, пока все страницы, поставленные в очередь до вызова, пройдут разбор и попадут в пачку на сохранение.
+     */
+    public void awaitSubmitted() throws InterruptedException {
+        synchronized (inProgress) {
+            long barrier = sequence.get();
+            Long head;
+            while ((head = inProgress.ceiling(Long.MIN_VALUE)) != null && head <= barrier) {
+                inProgress.wait(100);
+            }
+        }
+    }
+
+    public int getAnalyzeQueueSize() {
+        return analyzeQueue.size();
+    }
+
+    public int getPersistQueueSize() {
+        return persistQueue.size();
+    }
+
+    private void analyze() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Item item;
+            try {
+                item = analyzeQueue.take();
+            } catch (InterruptedException ex) {
+                return;
+            }
+            try {
+                analyzer.process(item);
+            } catch (Exception ex) {
+                logger.warn("Ошибка разбора страницы " + item.page.getPath() + ": " + ex.getMessage());
+            }
+            try {
+                persistQueue.put(item);
+            } catch (InterruptedException ex) {
+                done(item);
+                return;
+            }
+        }
+    }
+
+    private void persist() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Item item;
+            try {
+                item = persistQueue.take();
+            } catch (InterruptedException ex) {
+                return;
+            }
+            try {
+                persister.process(item);
+            } catch (Exception ex) {
+                logger.warn("Ошибка сохранения страницы " + item.page.getPath() + ": " + ex.getMessage());
+            } finally {
+                done(item);
+            }
+        }
+    }
+
+    private void done(Item item) {
+        synchronized (inProgress) {
+            inProgress.remove(item.sequence);
+            inProgress.notifyAll();
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public interface Stage {
+        void process(Item item) throws Exception;
+    }
+
+    /**
+     * Страница и результат ее разбора: леммы страницы, SimHash и найденный дубль.
+     */
+    public static class Item {
+        private final long sequence;
+        private final Page page;
+        private PageTerms terms;
+        private long fingerprint;
+        private int duplicateOf;
+
+        Item(long sequence, Page page) {
+            this.sequence = sequence;
+            this.page = page;
+        }
+
+        public Page getPage() {
+            return page;
+        }
+
+        public PageTerms getTerms() {
+            return terms;
+        }
+
+        public void setTerms(PageTerms terms) {
+            this.terms = terms;
+        }
+
+        public long getFingerprint() {
+            return fingerprint;
+        }
+
+        public void setFingerprint(long fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        public int getDuplicateOf() {
+            return duplicateOf;
+        }
+
+        public void setDuplicateOf(int duplicateOf) {
+            this.duplicateOf = duplicateOf;
+        }
+    }
+}
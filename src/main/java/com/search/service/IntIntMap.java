@@ -0,0 +1,133 @@
+package com.search.service;
+
+import java.util.Arrays;
+
+/**
+ * Отображение int -> int с открытой адресацией на двух массивах, без упаковки чисел и объектов на запись.
+ * Ключ 0 зарезервирован под пустую ячейку: номера лемм и строк начинаются с 1.
+ */
+public class IntIntMap {
+
+    private int[] keys;
+    private int[] values;
+    private int size = 0;
+
+    public IntIntMap() {
+        this(16);
+    }
+
+    public IntIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+    }
+
+    public int get(int key, int defaultValue) {
+        int slot = slot(keys, key);
+        return keys[slot] == 0 ? defaultValue : values[slot];
+    }
+
+    public boolean containsKey(int key) {
+        return keys[slot(keys, key)] != 0;
+    }
+
+    public void put(int key, int value) {
+        int slot = insert(key);
+        values[slot] = value;
+    }
+
+    /**
+     * Прибавляет delta к значению ключа, отсутствующий ключ считается равным 0.
+     */
+    public void addTo(int key, int delta) {
+        int slot = insert(key);
+        values[slot] += delta;
+    }
+
+    /**
+     * Удаляет ключ, сдвигая назад следующие за ним записи той же цепочки.
+     */
+    public void remove(int key) {
+        int slot = slot(keys, key);
+        if (keys[slot] == 0) return;
+        int mask = keys.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != 0) {
+            int home = home(keys[next], mask);
+            boolean movable = gap <= next ? (home <= gap || home > next) : (home <= gap && home > next);
+            if (movable) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = 0;
+        values[gap] = 0;
+        size--;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void forEach(Visitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                visitor.visit(keys[i], values[i]);
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+
+    private int insert(int key) {
+        if (key == 0) throw new IllegalArgumentException("Ключ 0 зарезервирован");
+        int slot = slot(keys, key);
+        if (keys[slot] == 0) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+                slot = slot(keys, key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == 0) continue;
+            int slot = slot(keys, oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private static int home(int key, int mask) {
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private static int slot(int[] keys, int key) {
+        int mask = keys.length - 1;
+        int slot = home(key, mask);
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    public interface Visitor {
+        void visit(int key, int value);
+    }
+}
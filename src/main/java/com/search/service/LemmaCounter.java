@@ -0,0 +1,107 @@
+package com.search.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Счетчик лемм текста: открытая адресация в двух массивах - ключи и счетчики int,
+ * без объекта на каждую лемму и без упаковки чисел.
+ */
+public class LemmaCounter {
+
+    private String[] keys;
+    private int[] counts;
+    private int size = 0;
+
+    public LemmaCounter() {
+        this(64);
+    }
+
+    public LemmaCounter(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        keys = new String[capacity];
+        counts = new int[capacity];
+    }
+
+    public void add(String lemma) {
+        add(lemma, 1);
+    }
+
+    public void add(String lemma, int count) {
+        int slot = slot(keys, lemma);
+        if (keys[slot] == null) {
+            keys[slot] = lemma;
+            size++;
+            if (size * 2 > keys.length) {
+                counts[slot] = count;
+                grow();
+                return;
+            }
+        }
+        counts[slot] += count;
+    }
+
+    /**
+     * Число вхождений леммы или 0.
+     */
+    public int get(String lemma) {
+        int slot = slot(keys, lemma);
+        return keys[slot] == null ? 0 : counts[slot];
+    }
+
+    public boolean contains(String lemma) {
+        return keys[slot(keys, lemma)] != null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void forEach(Visitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                visitor.visit(keys[i], counts[i]);
+            }
+        }
+    }
+
+    public Map<String, Integer> toMap() {
+        Map<String, Integer> map = new HashMap<>(size * 2);
+        forEach(map::put);
+        return map;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(counts, 0);
+        size = 0;
+    }
+
+    private void grow() {
+        String[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new String[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == null) continue;
+            int slot = slot(keys, oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            counts[slot] = oldCounts[i];
+        }
+    }
+
+    private static int slot(String[] keys, String lemma) {
+        int hash = lemma.hashCode() * 0x9E3779B9;
+        int mask = keys.length - 1;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (keys[slot] != null && !keys[slot].equals(lemma)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    public interface Visitor {
+        void visit(String lemma, int count);
+    }
+}
@@ -1,11 +1,10 @@
 package com.search.service;
 
-import com.search.model.Lemma;
-import com.search.model.Page;
+import com.search.scanning.CrawlerSettings;
 import org.apache.lucene.morphology.LuceneMorphology;
 import org.apache.lucene.morphology.WrongCharaterException;
+import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
 import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
-import org.jsoup.Jsoup;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
@@ -14,89 +13,93 @@ import java.util.*;
 @Service
 public class LemmaScanner {
 
-    private final LuceneMorphology luceneMorph = new RussianLuceneMorphology();
+    // длина столбца lemma в таблицах term и lemma
+    private static final int MAX_WORD_LENGTH = 255;
+    private static final List<String> RUSSIAN_FUNCTION_WORDS = List.of("СОЮЗ", "МЕЖД", "ПРЕДЛ", "ЧАСТ");
+    private static final List<String> ENGLISH_FUNCTION_WORDS = List.of("CONJ", "INT", "PREP", "PART", "ARTICLE");
+
+    private final LuceneMorphology russianMorph = new RussianLuceneMorphology();
+    private final LuceneMorphology englishMorph = new EnglishLuceneMorphology();
     private final DBConnector dbConnector;
+    private final MorphologyCache morphologyCache;
     private float titleWeight;
     private float bodyWeight;
 
-    public LemmaScanner(DBConnector dbConnector) throws IOException {
+    public LemmaScanner(DBConnector dbConnector, CrawlerSettings crawlerSettings) throws IOException {
 
         this.dbConnector = dbConnector;
+        this.morphologyCache = new MorphologyCache(crawlerSettings.getMorphologyCacheSize());
     }
 
     public Map<String, Integer> scan(String text) {
-        Map<String, Integer> lemmsMap = new HashMap<>();
-        List<String> words = splitText(text);
-        List<String> official = new ArrayList<>();
-        for (String word : words) {
-            try {
-                List<String> infos = luceneMorph.getMorphInfo(word);
-                StringBuilder infoString = new StringBuilder();
-                for (String info : infos) {
-                    infoString.append(info);
-                }
-                if (infoString.toString().contains("СОЮЗ")
-                        || infoString.toString().contains("МЕЖД")
-                        || infoString.toString().contains("ПРЕДЛ")
-                        || infoString.toString().contains("ЧАСТ")) {
-                    official.add(word);
-                }
-            } catch (WrongCharaterException | ArrayIndexOutOfBoundsException ex) {
-                official.add(word);
+        return count(text).toMap();
+    }
+
+    /**
+     * Леммы текста с числом вхождений: слова идут из токенизатора сразу в кэш морфологии,
+     * служебные слова отбрасываются на месте. Числа учитываются как есть, слова из смешанных алфавитов
+     * и прочих букв отбрасываются, как и до разбора по алфавитам.
+     */
+    public LemmaCounter count(String text) {
+        LemmaCounter counter = new LemmaCounter(text == null ? 16 : text.length() / 16);
+        TextTokenizer.tokenize(text, word -> {
+            if (word.length() > MAX_WORD_LENGTH) return;
+            Script script = Script.of(word);
+            if (script == Script.OTHER) return;
+            if (script == Script.NUMBER) {
+                counter.add(word);
+                return;
             }
-        }
-        words.removeAll(official);
-        for (String word : words) {
-            List<String> wordBaseForms = luceneMorph.getNormalForms(word);
-            for (String form : wordBaseForms) {
-                if (lemmsMap.containsKey(form)) {
-                    int value = lemmsMap.get(form) + 1;
-                    lemmsMap.replace(form, value);
-                } else {
-                    lemmsMap.put(form, 1);
-                }
+            MorphologyCache.Entry entry = morphologyCache.get(word, this::analyzeWord);
+            if (entry.isFunctionWord()) return;
+            for (String form : entry.getNormalForms()) {
+                counter.add(form);
             }
-        }
-        return lemmsMap;
+        });
+        return counter;
     }
 
-    public Map<String, Float> getLemmsForPageBySearchWords(Page page, List<Lemma> lemmaList) {
-
-        Map<String, Integer> bodyLemms = scan(Jsoup.parse(page.getContent()).text());
-
-        Map<String, Float> lemmsForPageBySearchWords = new HashMap<>();
-        for (Lemma lemma : lemmaList) {
-            if (bodyLemms.containsKey(lemma.getLemma())) {
-                lemmsForPageBySearchWords.put(lemma.getLemma(), bodyLemms.get(lemma.getLemma()) * getBodyWeight());
-            }
+    /**
+     * Разбор словоформы словарем ее алфавита, вызывается только при промахе кэша.
+     */
+    private MorphologyCache.Entry analyzeWord(String word) {
+        if (Script.of(word) == Script.ENGLISH) {
+            return analyzeWord(englishMorph, word, ENGLISH_FUNCTION_WORDS);
         }
-        Map<String, Integer> titleLemms = scan(Jsoup.parse(page.getContent()).title());
+        return analyzeWord(russianMorph, word, RUSSIAN_FUNCTION_WORDS);
+    }
 
-        for (Lemma lemma : lemmaList) {
-            if (titleLemms.containsKey(lemma.getLemma())) {
-                lemmsForPageBySearchWords.put(lemma.getLemma(), titleLemms.get(lemma.getLemma()) * getTitleWeight());
+    private MorphologyCache.Entry analyzeWord(LuceneMorphology morphology, String word, List<String> functionTags) {
+        if (!morphology.checkString(word)) {
+            return new MorphologyCache.Entry(List.of(word), false);
+        }
+        try {
+            boolean functionWord = false;
+            for (String info : morphology.getMorphInfo(word)) {
+                for (String tag : functionTags) {
+                    functionWord |= info.contains(tag);
+                }
             }
+            return new MorphologyCache.Entry(morphology.getNormalForms(word), functionWord);
+        } catch (WrongCharaterException | ArrayIndexOutOfBoundsException ex) {
+            // словарь не разобрал слово, хотя алфавит подходит - такого быть не должно
+            return new MorphologyCache.Entry(List.of(word), false);
         }
-        return lemmsForPageBySearchWords;
-    }
-
-    public List<String> splitText(String text) {
-        text = text.replaceAll("[\\p{P}\\p{S}]", "").toLowerCase();
-        text = text.replaceAll(" —", "");
-        text = text.replaceAll("\\s+", " ");
-
-        return (ArrayList<String>) new ArrayList(Arrays.asList(Arrays.stream(text.split(" ")).toArray()));
     }
 
     public List<String> getNormalForm(String word) {
-        List<String> normalforms = new ArrayList<>();
-        try {
-            normalforms.addAll(luceneMorph.getNormalForms(word));
-            return normalforms;
-        } catch (WrongCharaterException | ArrayIndexOutOfBoundsException ex) {
-            normalforms.add(word);
-            return normalforms;
+        Script script = Script.of(word);
+        if (script == Script.OTHER) {
+            return new ArrayList<>();
         }
+        if (script == Script.NUMBER) {
+            return new ArrayList<>(List.of(word));
+        }
+        return new ArrayList<>(morphologyCache.get(word, this::analyzeWord).getNormalForms());
+    }
+
+    public MorphologyCache getMorphologyCache() {
+        return morphologyCache;
     }
 
     public float getBodyWeight() {
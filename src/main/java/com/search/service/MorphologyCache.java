@@ -0,0 +1,134 @@
+package com.search.service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Общий кэш словоформ: нормальные формы слова и признак служебного слова. Слова в тексте постоянно
+ * повторяются, поэтому словарь морфологии запрашивается один раз на словоформу.
+ * Кэш разбит на сегменты со своей блокировкой, в каждом сегменте вытесняется давно не использованная словоформа.
+ */
+public class MorphologyCache {
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public MorphologyCache(int maxSize) {
+        int segmentSize = Math.max(1, maxSize / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    /**
+     * Возвращает разбор словоформы из кэша, при промахе вычисляет его и запоминает.
+     */
+    public Entry get(String word, Function<String, Entry> loader) {
+        Segment segment = segmentFor(word);
+        Entry entry;
+        synchronized (segment) {
+            entry = segment.get(word);
+        }
+        if (entry != null) {
+            hits.increment();
+            return entry;
+        }
+        misses.increment();
+        entry = loader.apply(word);
+        synchronized (segment) {
+            segment.put(word, entry);
+        }
+        return entry;
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Доля обращений, обслуженных без словаря, от 0 до 1.
+     */
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    private Segment segmentFor(String word) {
+        int hash = word.hashCode();
+        hash ^= hash >>> 16;
+        return segments[hash & (SEGMENTS - 1)];
+    }
+
+    private class Segment extends LinkedHashMap<String, Entry> {
+        private static final long serialVersionUID = 1L;
+        private final int maxSize;
+
+        Segment(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() <= maxSize) return false;
+            evictions.increment();
+            return true;
+        }
+    }
+
+    /**
+     * Нормальные формы словоформы и признак служебного слова (союз, предлог, частица, междометие).
+     * Слово, которое словарь не разбирает, служебным не считается и индексируется как есть: нормальная форма - оно само.
+     */
+    public static class Entry {
+        private final List<String> normalForms;
+        private final boolean functionWord;
+
+        public Entry(List<String> normalForms, boolean functionWord) {
+            this.normalForms = List.copyOf(normalForms);
+            this.functionWord = functionWord;
+        }
+
+        public List<String> getNormalForms() {
+            return normalForms;
+        }
+
+        public boolean isFunctionWord() {
+            return functionWord;
+        }
+    }
+}
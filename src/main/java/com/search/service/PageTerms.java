@@ -0,0 +1,66 @@
+package com.search.service;
+
+import java.sql.SQLException;
+
+/**
+ * Леммы одной страницы с частотой и рангом. Считается в потоке разбора без обращения к общим данным,
+ * поток сохранения только переносит готовые значения в пачку. Леммы хранятся номерами из словаря.
+ */
+public class PageTerms {
+
+    private final int[] termIds;
+    private final int[] frequencies;
+    private final float[] ranks;
+    private int size = 0;
+
+    private PageTerms(int capacity) {
+        termIds = new int[capacity];
+        frequencies = new int[capacity];
+        ranks = new float[capacity];
+    }
+
+    /**
+     * Частота леммы - сумма вхождений в текст и заголовок, ранг - взвешенная сумма вхождений.
+     */
+    public static PageTerms of(LemmaCounter body, LemmaCounter title, float bodyWeight, float titleWeight,
+                               TermDictionary dictionary) throws SQLException {
+        PageTerms terms = new PageTerms(body.size() + title.size());
+        String[] lemmas = new String[body.size() + title.size()];
+        body.forEach((lemma, bodyCount) -> {
+            int titleCount = title.get(lemma);
+            lemmas[terms.size] = lemma;
+            terms.add(bodyCount + titleCount, bodyCount * bodyWeight + titleCount * titleWeight);
+        });
+        title.forEach((lemma, titleCount) -> {
+            if (body.contains(lemma)) return;
+            lemmas[terms.size] = lemma;
+            terms.add(titleCount, titleCount * titleWeight);
+        });
+        for (int i = 0; i < terms.size; i++) {
+            terms.termIds[i] = dictionary.idOf(lemmas[i]);
+        }
+        return terms;
+    }
+
+    private void add(int frequency, float rank) {
+        frequencies[size] = frequency;
+        ranks[size] = rank;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getTermId(int i) {
+        return termIds[i];
+    }
+
+    public int getFrequency(int i) {
+        return frequencies[i];
+    }
+
+    public float getRank(int i) {
+        return ranks[i];
+    }
+}
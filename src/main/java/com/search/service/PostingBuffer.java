@@ -0,0 +1,90 @@
+package com.search.service;
+
+/**
+ * Пачка записей индекса в трех столбцах: страница, лемма, ранг. Добавление - запись в массивы,
+ * при нехватке места массивы удваиваются, поэтому на одну запись приходится 12 байт и ни одного объекта.
+ */
+public class PostingBuffer {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int[] pageIds;
+    private int[] termIds;
+    private float[] ranks;
+    private int size = 0;
+
+    public PostingBuffer() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    public void add(int pageId, int termId, float rank) {
+        if (size == pageIds.length) {
+            grow();
+        }
+        pageIds[size] = pageId;
+        termIds[size] = termId;
+        ranks[size] = rank;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int getPageId(int i) {
+        return pageIds[i];
+    }
+
+    public int getTermId(int i) {
+        return termIds[i];
+    }
+
+    public float getRank(int i) {
+        return ranks[i];
+    }
+
+    /**
+     * Убирает первые count записей, например уже сохраненные до сбоя записи.
+     */
+    public void removeFirst(int count) {
+        count = Math.min(count, size);
+        if (count <= 0) return;
+        System.arraycopy(pageIds, count, pageIds, 0, size - count);
+        System.arraycopy(termIds, count, termIds, 0, size - count);
+        System.arraycopy(ranks, count, ranks, 0, size - count);
+        size -= count;
+    }
+
+    /**
+     * Очищает пачку; слишком разросшиеся массивы отдаются сборщику, чтобы не держать память между сохранениями.
+     */
+    public void clear() {
+        size = 0;
+        if (pageIds.length > INITIAL_CAPACITY * 64) {
+            allocate(INITIAL_CAPACITY);
+        }
+    }
+
+    private void allocate(int capacity) {
+        pageIds = new int[capacity];
+        termIds = new int[capacity];
+        ranks = new float[capacity];
+    }
+
+    private void grow() {
+        int capacity = pageIds.length * 2;
+        int[] newPageIds = new int[capacity];
+        int[] newTermIds = new int[capacity];
+        float[] newRanks = new float[capacity];
+        System.arraycopy(pageIds, 0, newPageIds, 0, size);
+        System.arraycopy(termIds, 0, newTermIds, 0, size);
+        System.arraycopy(ranks, 0, newRanks, 0, size);
+        pageIds = newPageIds;
+        termIds = newTermIds;
+        ranks = newRanks;
+    }
+}
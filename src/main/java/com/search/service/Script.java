@@ -0,0 +1,27 @@
+package com.search.service;
+
+/**
+ * Алфавит слова: по нему выбирается словарь морфологии. Числа индексируются как есть, слова
+ * из смешанных алфавитов и букв, которых нет в словарях, не индексируются.
+ */
+public enum Script {
+    RUSSIAN,
+    ENGLISH,
+    NUMBER,
+    OTHER;
+
+    public static Script of(String word) {
+        if (word.isEmpty()) return OTHER;
+        boolean russian = true;
+        boolean english = true;
+        boolean number = true;
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            russian &= (c >= 'а' && c <= 'я') || c == 'ё';
+            english &= c >= 'a' && c <= 'z';
+            number &= c >= '0' && c <= '9';
+            if (!russian && !english && !number) return OTHER;
+        }
+        return russian ? RUSSIAN : english ? ENGLISH : NUMBER;
+    }
+}
@@ -1,101 +1,92 @@
 package com.search.service;
 
+import com.search.model.PageHit;
 import com.search.model.SearchResult;
-import com.search.model.Lemma;
 import com.search.model.Page;
 import com.search.model.Site;
 import org.apache.logging.log4j.Logger;
 import org.json.JSONObject;
-import org.jsoup.Jsoup;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Service
 public class SearchService {
 
     private final LemmaScanner lemmaScanner;
     private final DBConnector fastDBConnector;
+    private final TermDictionary termDictionary;
     private final Logger logger;
 
-    public SearchService(LemmaScanner lemmaScanner, DBConnector fastDBConnector, Logger logger) throws IOException {
+    public SearchService(LemmaScanner lemmaScanner, DBConnector fastDBConnector, TermDictionary termDictionary,
+                         Logger logger) throws IOException {
         this.lemmaScanner = lemmaScanner;
         this.fastDBConnector = fastDBConnector;
+        this.termDictionary = termDictionary;
         this.logger = logger;
     }
 
 
-    public List<SearchResult> search(String query) throws IOException, SQLException {
+    /**
+     * Страницы, содержащие все леммы запроса, по убыванию релевантности. Тексты страниц не загружаются.
+     */
+    public List<PageHit> search(String query, String siteUrl) throws SQLException {
         Map<String, Integer> queryLemmsMap = lemmaScanner.scan(query);
-        if (query.length() < 1) return new ArrayList<>();
-
-        List<Lemma> queryLemmsList = queryLemmsMap.keySet()
-                .stream()
-                .map(ls -> new Lemma(0, ls, queryLemmsMap.get(ls)))
-                .toList();
-        Set<Page> pages = getPagesForQueryList(queryLemmsList);
-        List<SearchResult> searchResults = getSearchResults(pages, queryLemmsList, queryLemmsMap);
-        float maxRelevance = getMaxRelevance(searchResults);
-        for (SearchResult searchResult : searchResults) {
-            searchResult.setRelativeRel(searchResult.getAbsoluteRel() / maxRelevance);
-        }
-        searchResults.sort(Comparator.comparing(SearchResult::getRelativeRel).reversed());
-        writeSearchResultsLogs(searchResults);
-        return searchResults;
-    }
+        if (queryLemmsMap.isEmpty()) return new ArrayList<>();
 
-    private void writeSearchResultsLogs(List<SearchResult> searchResults) {
-        for (SearchResult searchResult : searchResults) {
-            logger.debug(searchResult.getPage().getPath() + " - " +
-                    searchResult.getRelativeRel() + " - " + searchResult.getAbsoluteRel());
+        List<Integer> termIds = new ArrayList<>();
+        for (String ls : queryLemmsMap.keySet()) {
+            termIds.add(termDictionary.find(ls));
         }
-    }
-
-    private float getMaxRelevance(List<SearchResult> searchResults) {
-        float maxRelevance = 0.0F;
-        for (SearchResult searchResult : searchResults) {
-            if (searchResult.getAbsoluteRel() <= maxRelevance) continue;
-            maxRelevance = searchResult.getAbsoluteRel();
+        Integer siteId = null;
+        if (siteUrl != null) {
+            siteId = findSiteId(siteUrl);
+            if (siteId == null) return new ArrayList<>();
         }
-        return maxRelevance;
+        return fastDBConnector.getPageHits(termIds, siteId);
     }
 
-    private List<SearchResult> getSearchResults(Set<Page> pages, List<Lemma> queryLemmsList, Map<String, Integer> queryLemmsMap) throws IOException {
+    /**
+     * Результаты для окна выдачи: тексты offset..offset+limit страниц загружаются одним запросом,
+     * сниппеты строятся только для них. limit 0 - до конца выдачи.
+     */
+    public List<SearchResult> getSearchResults(String query, List<PageHit> hits, int offset, int limit) throws SQLException {
         List<SearchResult> searchResults = new ArrayList<>();
-        float maxRelevance = 0.0F;
-        for (Page page : pages) {
-            Map<String, Float> lemmsForPage = lemmaScanner.getLemmsForPageBySearchWords(page, queryLemmsList);
-            float absoluteRel = 0.0F;
-            for (String s : lemmsForPage.keySet()) {
-                absoluteRel += lemmsForPage.get(s);
-                if (absoluteRel > maxRelevance) {
-                    maxRelevance = absoluteRel;
-                }
+        int from = Math.max(0, offset);
+        int to = limit > 0 ? Math.min(hits.size(), from + limit) : hits.size();
+        if (from >= to) return searchResults;
+        List<PageHit> window = hits.subList(from, to);
+        Map<Integer, Page> pages = fastDBConnector.getPagesByIds(window.stream().map(PageHit::getPageId).toList());
+        Set<String> queryLemms = lemmaScanner.scan(query).keySet();
+        float maxRelevance = hits.get(0).getRelevance();
+        for (PageHit hit : window) {
+            Page page = pages.get(hit.getPageId());
+            if (page == null) continue;
+            String snippet = getSnippet(page, queryLemms);
+            if (snippet.isEmpty()) {
+                // лемма только в заголовке или текст короче сниппета: показываем начало текста
+                snippet = leadSnippet(page.getText());
             }
-            SearchResult searchResult = new SearchResult(page, getSnippet(page, queryLemmsMap.keySet()), absoluteRel);
-            if (!searchResult.getSnippet().isEmpty()) searchResults.add(searchResult);
+            SearchResult searchResult = new SearchResult(page, snippet, hit.getRelevance());
+            // при нулевой максимальной релевантности все страницы одинаково релевантны
+            searchResult.setRelativeRel(maxRelevance > 0 ? hit.getRelevance() / maxRelevance : 1.0F);
+            searchResults.add(searchResult);
         }
+        writeSearchResultsLogs(searchResults);
         return searchResults;
     }
 
-    private Set<Page> getPagesForQueryList(List<Lemma> queryLemmsList) throws SQLException {
-        Set<Page> pages = new HashSet<>(fastDBConnector.getPagesByLemma(queryLemmsList.get(0).getLemma()));
-
-        if (queryLemmsList.size() >= 1) {
-            for (int i = 1; i < queryLemmsList.size(); i++) {
-                List<Page> pagesList = fastDBConnector.getPagesByLemma(queryLemmsList.get(i).getLemma());
-                List<String> strings = pagesList.stream().map(Page::getPath).toList();
-                pages = pages.stream().filter(p -> strings.contains(p.getPath())).collect(Collectors.toSet());
-            }
+    private void writeSearchResultsLogs(List<SearchResult> searchResults) {
+        for (SearchResult searchResult : searchResults) {
+            logger.debug(searchResult.getPage().getPath() + " - " +
+                    searchResult.getRelativeRel() + " - " + searchResult.getAbsoluteRel());
         }
-        return pages;
     }
 
     private String getSnippet(Page page, Set<String> queryLemmsSet) {
-        String sourceText = Jsoup.parse(page.getContent()).text();
+        String sourceText = page.getText();
         String text = prepareSourceText(sourceText);
         List<String> words = Arrays.stream(text.split(" ")).toList();
         Map<Integer, String> indexes = getWordsIndexes(words, queryLemmsSet, sourceText);
@@ -103,6 +94,11 @@ public class SearchService {
         return cutSnippet(snippetBuilder);
     }
 
+    private String leadSnippet(String text) {
+        if (text == null) return "";
+        return text.length() > 200 ? text.substring(0, 200) + "..." : text;
+    }
+
     private String cutSnippet(StringBuilder snippetBuilder) {
         String resultSnippet = "";
         for (int snippetStart = 0; snippetStart < snippetBuilder.length(); snippetStart++) {
@@ -184,11 +180,14 @@ public class SearchService {
         return text.replaceAll("\\s+", " ");
     }
 
-    public JSONObject toJSONObject(List<SearchResult> searchResults) throws SQLException {
+    /**
+     * count - число всех найденных страниц, data - только окно выдачи.
+     */
+    public JSONObject toJSONObject(List<SearchResult> searchResults, int count) throws SQLException {
 
         JSONObject response = new JSONObject();
         response.put("result", true);
-        response.put("count", searchResults.size());
+        response.put("count", count);
         List<JSONObject> searchResultsList = new ArrayList<>();
 
         for (SearchResult searchResult : searchResults) {
@@ -196,16 +195,15 @@ public class SearchService {
 
             Site site = fastDBConnector.getSiteById(searchResult.getPage().getSiteId());
             String siteUrl = site.getUrl();
-            String title = Jsoup.parse(searchResult.getPage().getContent()).getElementsByTag("title").text();
+            String title = searchResult.getPage().getTitle();
             String uri = searchResult.getPage().getPath();
-            int length = siteUrl.length();
             double relevance = Math.round(searchResult.getRelativeRel());
             double scale = Math.pow(10, 3);
             double result = Math.ceil(relevance * scale) / scale;
 
-            searchResultObject.put("site", siteUrl);
+            searchResultObject.put("site", stripSlash(siteUrl));
             searchResultObject.put("siteName", site.getName());
-            searchResultObject.put("uri", uri.substring(length + 1));
+            searchResultObject.put("uri", relativeUri(uri, siteUrl));
             searchResultObject.put("title", title);
             searchResultObject.put("snippet", searchResult.getSnippet());
             searchResultObject.put("relevance", result);
@@ -216,13 +214,28 @@ public class SearchService {
         return response;
     }
 
-    public List<SearchResult> filterBySite(List<SearchResult> searchResults, String siteUrl) {
-        List<SearchResult> filteredSR = new ArrayList<>();
-        for (SearchResult searchResult : searchResults) {
-            Page page = searchResult.getPage();
-            String path = page.getPath();
-            if (path.contains(siteUrl)) filteredSR.add(searchResult);
+    /**
+     * Адрес страницы относительно сайта, начиная с "/". Главная страница хранится с адресом сайта без слэша,
+     * для нее это "/".
+     */
+    private String relativeUri(String path, String siteUrl) {
+        String site = stripSlash(siteUrl);
+        String uri = path.startsWith(site) ? path.substring(site.length()) : path;
+        return uri.startsWith("/") ? uri : "/" + uri;
+    }
+
+    /**
+     * Идентификатор сайта по его адресу, null - сайт не найден.
+     */
+    private Integer findSiteId(String siteUrl) {
+        String url = stripSlash(siteUrl);
+        for (Site site : fastDBConnector.getSites()) {
+            if (stripSlash(site.getUrl()).equals(url)) return site.getId();
         }
-        return filteredSR;
+        return null;
+    }
+
+    private String stripSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
     }
 }
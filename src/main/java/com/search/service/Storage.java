@@ -1,139 +1,387 @@
 package com.search.service;
 
-import com.search.model.Index;
 import com.search.model.Lemma;
 import com.search.model.Page;
+import com.search.model.PageState;
+import com.search.scanning.CrawlStorage;
+import com.search.scanning.CrawlerSettings;
+import com.search.scanning.SeenUrlSet;
 import org.apache.logging.log4j.Logger;
 import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.SQLException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 @Service
-public class Storage {
+public class Storage implements CrawlStorage {
     private final LemmaScanner lemmaScanner;
     private final DBConnector DBConnector;
+    private final DuplicateDetector duplicateDetector;
+    private final TermDictionary termDictionary;
     private final Logger logger;
     private boolean isStarted;
 
-    private final AtomicInteger indexId = new AtomicInteger(0);
     private final AtomicInteger lemmaId = new AtomicInteger(0);
     private final AtomicInteger pageId = new AtomicInteger(0);
-    private final Set<Page> pages = new CopyOnWriteArraySet<>();
-    private final Map<String, List<Lemma>> lemms = new ConcurrentHashMap<>();
-    private final List<Index> indexes = new CopyOnWriteArrayList<>();
-    private final Set<String> usedLinks = new CopyOnWriteArraySet<>();
+    private final Set<Page> pages = new HashSet<>();
+    private final Map<Integer, SiteTerms> siteTerms = new HashMap<>();
+    private final PostingBuffer postings = new PostingBuffer();
+    // страницы пачки, старые индексы которых уже удалены: при повторе прерванного сохранения их не удаляем снова
+    private final Set<Integer> deletedIndexes = new HashSet<>();
+    private final SeenUrlSet usedLinks;
+    private final Map<String, PageState> knownPages = new ConcurrentHashMap<>();
+    private final Set<String> visitedPaths = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, PageState> pageStates = new ConcurrentHashMap<>();
     private final AtomicInteger count = new AtomicInteger(0);
-    private boolean stop = false;
-
-    public Storage(LemmaScanner lemmaScanner, DBConnector DBConnector, Logger logger) {
+    private final IndexingPipeline pipeline;
+    private final int persistBatchSize;
+    private final CrawlerSettings crawlerSettings;
+    // загрузка через файлы при полной переиндексации, null - запись обычными запросами
+    private BulkLoader bulkLoader;
+    private volatile boolean stop = false;
+
+    public Storage(LemmaScanner lemmaScanner, DBConnector DBConnector, Logger logger, CrawlerSettings crawlerSettings,
+                   DuplicateDetector duplicateDetector, TermDictionary termDictionary) {
         this.lemmaScanner = lemmaScanner;
         this.DBConnector = DBConnector;
+        this.duplicateDetector = duplicateDetector;
+        this.termDictionary = termDictionary;
         this.logger = logger;
+        this.crawlerSettings = crawlerSettings;
+        this.usedLinks = new SeenUrlSet(crawlerSettings.getSeenExpectedUrls());
+        this.persistBatchSize = Math.max(1, crawlerSettings.getPersistBatchSize());
+        this.pipeline = new IndexingPipeline(crawlerSettings.getAnalyzeWorkers(), crawlerSettings.getAnalyzeQueueSize(),
+                crawlerSettings.getPersistQueueSize(), this::analyze, this::collect);
     }
 
-    public synchronized void addPage(Page page) throws IOException, SQLException {
-        if(stop) return;
-        pages.add(page);
-        if (pages.size() % 50 == 0) {
-            logger.info("Найдено " + pages.size() + " страниц");
-        }
-        if (pages.size() >= 500) {
-            createLemmsAndIndexesAndCollect();
-            DBConnector.saveAllLemms(lemms);
-            clearLemmas();
-            DBConnector.saveAllIndexes(indexes);
-            clearIndexes();
-            DBConnector.saveAllPages(pages);
-            clearPages();
+    /**
+     * Передает страницу на разбор. Возвращает false, если индексация остановлена и страница не принята.
+     */
+    public boolean addPage(Page page) throws IOException, SQLException {
+        if (stop) return false;
+        try {
+            pipeline.submit(page);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
         }
+        return true;
+    }
+
+    /**
+     * Дожидается разбора всех принятых страниц и записывает их в базу. Загрузка через файлы при этом
+     * продолжается: накопленная часть загружается, вторичные индексы остаются удаленными. Вызывается
+     * контрольной точкой обхода и при индексации отдельной страницы.
+     */
+    public void persist() throws IOException, SQLException {
+        if (!awaitSubmitted()) return;
+        flush();
+        loadBulkChunk();
+    }
+
+    /**
+     * Сохраняет все данные в конце индексации или при ее остановке и завершает загрузку через файлы.
+     */
+    public void saveAllData() throws IOException, SQLException {
+        if (!awaitSubmitted()) return;
+        flush();
+        finishBulkLoad();
     }
 
-    public synchronized void saveAllData() throws IOException, SQLException {
-        createLemmsAndIndexesAndCollect();
-        if (lemms.size() > 0) {
-            DBConnector.saveAllLemms(lemms);
-            clearLemmas();
+    private boolean awaitSubmitted() {
+        try {
+            pipeline.awaitSubmitted();
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
         }
-        if (indexes.size() > 0) {
-            DBConnector.saveAllIndexes(indexes);
-            clearIndexes();
+    }
+
+    /**
+     * Включает запись через файлы до конца индексации (crawler.bulk-load). Используется только при полной
+     * переиндексации в пустые таблицы; если сервер не разрешает LOAD DATA LOCAL INFILE, запись идет как обычно.
+     */
+    public synchronized void startBulkLoad() throws IOException, SQLException {
+        if (!DBConnector.isLocalInfileEnabled()) {
+            logger.warn("На сервере MySQL выключен local_infile, данные индексации будут записаны обычными запросами");
+            return;
+        }
+        BulkLoader loader = new BulkLoader(DBConnector, Path.of(crawlerSettings.getBulkLoadDir()), logger);
+        loader.begin();
+        bulkLoader = loader;
+    }
+
+    /**
+     * Доводит до конца загрузку через файлы, прерванную сбоем или остановкой: возвращает удаленные вторичные
+     * индексы и удаляет незагруженные файлы. Страницы из этих файлов записаны после последней контрольной
+     * точки, продолженный обход загрузит их снова и запишет обычными запросами.
+     */
+    public synchronized void recoverBulkLoad() throws IOException, SQLException {
+        Path dir = Path.of(crawlerSettings.getBulkLoadDir());
+        if (bulkLoader != null || !Files.isDirectory(dir)) return;
+        new BulkLoader(DBConnector, dir, logger).recover();
+    }
+
+    private synchronized void loadBulkChunk() throws IOException, SQLException {
+        if (bulkLoader == null) return;
+        saveBulkLoad();
+    }
+
+    private synchronized void finishBulkLoad() throws IOException, SQLException {
+        if (bulkLoader == null) return;
+        saveBulkLoad();
+        bulkLoader.finish();
+        bulkLoader = null;
+    }
+
+    private synchronized void flush() throws IOException, SQLException {
+        if (bulkLoader != null) {
+            flushToBulkLoad();
+            return;
+        }
+        List<Page> storedPages = pages.stream().filter(Page::isStored).toList();
+        List<Integer> outdatedIndexes = storedPages.stream().map(Page::getId)
+                .filter(id -> !deletedIndexes.contains(id)).toList();
+        if (outdatedIndexes.size() > 0) {
+            DBConnector.deleteIndexesByPages(outdatedIndexes);
+            deletedIndexes.addAll(outdatedIndexes);
+        }
+        termDictionary.save();
+        saveLemmas();
+        if (!postings.isEmpty()) {
+            saveIndexes();
         }
         if (pages.size() > 0) {
-            DBConnector.saveAllPages(pages);
+            DBConnector.saveAllPages(pages.stream().filter(p -> !p.isStored()).collect(Collectors.toSet()));
+            DBConnector.updatePages(storedPages);
+            DBConnector.savePageTexts(pages);
             clearPages();
+            deletedIndexes.clear();
+        }
+        if (pageStates.size() > 0) {
+            DBConnector.savePageStates(pageStates.values());
+            pageStates.clear();
         }
     }
 
-    public synchronized void createLemmsAndIndexesAndCollect() throws IOException, SQLException {
-        if (lemms.size() != 0) DBConnector.saveAllLemms(lemms);
-        lemms.clear();
-        Set<Page> pages = new HashSet<>(getPages());
-        for (Page page : pages) {
-            count.incrementAndGet();
-            String path = page.getPath();
-            path = formatPath(path);
-            if (count.get() % 50 == 0) {
-                logger.info(String.format("Идет создание лемм и индексов (%s из %s)", count.get(), pages.size()));
-            }
-            String message = String.format("Идет создание лемм и индексов: %s (%d из %d)", path, count.get(), pages.size());
-            logger.debug(message);
-            int siteId = page.getSiteId();
-            String textBody = Jsoup.parse(page.getContent()).text();
-            String textTitle = Jsoup.parse(page.getContent()).getElementsByTag("title").text();
-            putLemmsIfExistIncreaseValue(page, lemmaScanner.scan(textBody), lemmaScanner.scan(textTitle), siteId);
+    /**
+     * Пачка дописывается в файлы; когда в них накопилось bulk-load-chunk-rows строк, файлы загружаются в базу.
+     * Частоты лемм копятся в памяти и пишутся перед каждой загрузкой.
+     */
+    private void flushToBulkLoad() throws IOException, SQLException {
+        bulkLoader.writeIndexes(postings);
+        clearIndexes();
+        bulkLoader.writePages(pages);
+        clearPages();
+        bulkLoader.writePageStates(pageStates.values());
+        pageStates.clear();
+        if (bulkLoader.getPendingRows() >= crawlerSettings.getBulkLoadChunkRows()) {
+            saveBulkLoad();
         }
-        count.set(0);
     }
 
-    public void putLemmsIfExistIncreaseValue(Page page, Map<String, Integer> mapBody, Map<String, Integer> mapTitle, int siteId) {
+    private void saveBulkLoad() throws IOException, SQLException {
+        termDictionary.save();
+        saveLemmas();
+        bulkLoader.load();
+    }
 
-        float rank;
-        List<String> tempLemms = new ArrayList<>();
+    /**
+     * Новые для сайта леммы добавляются строками в lemma, у уже сохраненных увеличивается частота.
+     * Если запись прервалась, несохраненные частоты остаются и уйдут в базу при следующем сохранении.
+     */
+    private void saveLemmas() throws SQLException {
+        for (Map.Entry<Integer, SiteTerms> site : siteTerms.entrySet()) {
+            saveLemmas(site.getKey(), site.getValue());
+        }
+    }
 
-        for (String lemmaBody : mapBody.keySet()) {
-            if (mapTitle.containsKey(lemmaBody)) {
-                rank = mapBody.get(lemmaBody) * lemmaScanner.getBodyWeight() + mapTitle.get(lemmaBody) * lemmaScanner.getTitleWeight();
-                putLemmaInCollection(lemmaBody, mapBody.get(lemmaBody) + mapTitle.get(lemmaBody), siteId, page.getId(), rank);
-                tempLemms.add(lemmaBody);
+    private void saveLemmas(int siteId, SiteTerms terms) throws SQLException {
+        if (terms.frequencies.size() == 0) return;
+        List<Lemma> newLemmas = new ArrayList<>();
+        List<Integer> newTerms = new ArrayList<>();
+        List<Lemma> storedLemmas = new ArrayList<>();
+        List<Integer> storedTerms = new ArrayList<>();
+        terms.frequencies.forEach((termId, frequency) -> {
+            int rowId = terms.rows.get(termId, 0);
+            if (rowId == 0) {
+                newLemmas.add(new Lemma(increaseLemmaIdAndGet(), termDictionary.lemmaOf(termId), frequency, siteId));
+                newTerms.add(termId);
             } else {
-                rank = mapBody.get(lemmaBody) * lemmaScanner.getBodyWeight();
-                putLemmaInCollection(lemmaBody, mapBody.get(lemmaBody), siteId, page.getId(), rank);
+                storedLemmas.add(new Lemma(rowId, termDictionary.lemmaOf(termId), frequency, siteId));
+                storedTerms.add(termId);
+            }
+        });
+        int committed = 0;
+        try {
+            DBConnector.saveAllLemms(newLemmas);
+            committed = newLemmas.size();
+        } catch (BatchWriter.BatchWriteException ex) {
+            committed = ex.getCommittedRows();
+            throw ex;
+        } finally {
+            for (int i = 0; i < committed; i++) {
+                terms.rows.put(newTerms.get(i), newLemmas.get(i).getId());
+                terms.frequencies.remove(newTerms.get(i));
             }
         }
+        committed = 0;
+        try {
+            DBConnector.updateLemmaFrequencies(storedLemmas);
+            committed = storedLemmas.size();
+        } catch (BatchWriter.BatchWriteException ex) {
+            committed = ex.getCommittedRows();
+            throw ex;
+        } finally {
+            for (int i = 0; i < committed; i++) {
+                terms.frequencies.remove(storedTerms.get(i));
+            }
+        }
+    }
+
+    private void saveIndexes() throws SQLException {
+        try {
+            DBConnector.saveAllIndexes(postings);
+            clearIndexes();
+        } catch (BatchWriter.BatchWriteException ex) {
+            postings.removeFirst(ex.getCommittedRows());
+            throw ex;
+        }
+    }
+
+    public int getAnalyzeQueueSize() {
+        return pipeline.getAnalyzeQueueSize();
+    }
+
+    public int getPersistQueueSize() {
+        return pipeline.getPersistQueueSize();
+    }
+
+    public void loadKnownPages(int siteId) throws SQLException {
+        knownPages.putAll(DBConnector.getPageStates(siteId));
+    }
+
+    public PageState getKnownPage(String path) {
+        visitedPaths.add(path);
+        return knownPages.get(path);
+    }
 
-        tempLemms.forEach(mapTitle::remove);
+    public void keepUnchangedPage(PageState state) {
+        pageStates.put(state.getPageId(), state);
+    }
+
+    public String loadPageContent(int pageId) throws SQLException {
+        return DBConnector.getPageContent(pageId);
+    }
+
+    public synchronized void deleteVanishedPages() throws SQLException {
+        List<Integer> vanished = knownPages.values().stream()
+                .filter(s -> !visitedPaths.contains(s.getPath()))
+                .map(PageState::getPageId)
+                .toList();
+        DBConnector.deletePages(vanished);
+    }
 
-        for (String lemmaTitle : mapTitle.keySet()) {
-            rank = mapTitle.get(lemmaTitle) * lemmaScanner.getTitleWeight();
-            putLemmaInCollection(lemmaTitle, mapTitle.get(lemmaTitle), siteId, page.getId(), rank);
+    public synchronized void resetIds() throws SQLException {
+        pageId.set(DBConnector.getMaxId("page"));
+        lemmaId.set(DBConnector.getMaxId("lemma"));
+        siteTerms.clear();
+        for (Lemma row : DBConnector.getLemmaRows()) {
+            IntIntMap rows = siteTerms.computeIfAbsent(row.getSiteId(), id -> new SiteTerms()).rows;
+            int termId = termDictionary.idOf(row.getLemma());
+            if (!rows.containsKey(termId)) {
+                rows.put(termId, row.getId());
+            }
         }
+        knownPages.clear();
+        visitedPaths.clear();
+        pageStates.clear();
     }
 
-    public void putLemmaInCollection(String lemmaString, int frequency, int siteId, int pageId, float rank) {
-        Lemma lemma = new Lemma(increaseLemmaIdAndGet(), lemmaString, frequency, siteId);
-        if (!getLemms().containsKey(lemmaString)) {
-            lemms.put(lemmaString, new ArrayList<>(List.of(lemma)));
-        } else {
-            List<Lemma> lemmaList = getLemms().get(lemmaString);
-            List<Integer> siteIdList = lemmaList.stream().map(Lemma::getSiteId).toList();
-            if (!siteIdList.contains(siteId)) {
-                lemmaList.add(lemma);
-                lemms.put(lemmaString, lemmaList);
-            } else {
-                for (Lemma l : lemmaList) {
-                    if (l.getSiteId() != siteId) continue;
-                    l.setFrequency(l.getFrequency() + frequency);
-                }
+    /**
+     * Стадия разбора, выполняется параллельно и не трогает общую пачку: текст, SimHash и проверка на дубль,
+     * частоты и ранги лемм страницы.
+     */
+    private void analyze(IndexingPipeline.Item item) throws SQLException {
+        Page page = item.getPage();
+        int number = count.incrementAndGet();
+        if (number % 50 == 0) {
+            logger.info(String.format("Идет создание лемм и индексов (%d страниц)", number));
+        }
+        logger.debug(String.format("Идет создание лемм и индексов: %s", formatPath(page.getPath())));
+        int siteId = page.getSiteId();
+        String textBody = page.getText();
+        String textTitle = page.getTitle();
+        if (textBody == null || textTitle == null) {
+            Document document = Jsoup.parse(page.getContent());
+            textBody = document.text();
+            textTitle = document.title();
+            page.setText(textBody);
+            page.setTitle(textTitle);
+        }
+        if (duplicateDetector.isEnabled() && page.getCode() < 400) {
+            long fingerprint = duplicateDetector.fingerprint(textBody);
+            int original = fingerprint == 0 ? 0 : duplicateDetector.findOrRegister(siteId, fingerprint, page.getId());
+            if (original != 0) {
+                logger.debug("Страница " + page.getPath() + " почти совпадает со страницей " + original + ", индексация пропущена");
+                item.setDuplicateOf(original);
+                return;
             }
+            item.setFingerprint(fingerprint);
+        }
+        PageTerms terms;
+        try {
+            terms = PageTerms.of(lemmaScanner.count(textBody), lemmaScanner.count(textTitle),
+                    lemmaScanner.getBodyWeight(), lemmaScanner.getTitleWeight(), termDictionary);
+        } catch (SQLException | RuntimeException ex) {
+            if (item.getFingerprint() != 0) {
+                duplicateDetector.unregister(siteId, page.getId());
+            }
+            throw ex;
+        }
+        item.setTerms(terms);
+        if (item.getFingerprint() != 0) {
+            duplicateDetector.setPostings(siteId, page.getId(), terms.size());
+        }
+    }
+
+    /**
+     * Стадия сохранения, выполняется в одном потоке: леммы и индексы страницы добавляются в текущую пачку,
+     * заполненная пачка пишется в базу.
+     */
+    private synchronized void collect(IndexingPipeline.Item item) throws IOException, SQLException {
+        Page page = item.getPage();
+        PageState state = new PageState(page.getId(), page.getPath(), page.getEtag(),
+                page.getLastModified(), page.getContentHash());
+        state.setDuplicateOf(item.getDuplicateOf());
+        pageStates.put(page.getId(), state);
+        if (item.getTerms() != null) {
+            putPageTerms(item.getTerms(), page.getSiteId(), page.getId());
+        }
+        pages.add(page);
+        if (pages.size() >= persistBatchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Частоты лемм копятся по сайту и номеру леммы, индекс ссылается на номер леммы из словаря.
+     */
+    public void putPageTerms(PageTerms terms, int siteId, int pageId) {
+        IntIntMap frequencies = siteTerms.computeIfAbsent(siteId, id -> new SiteTerms()).frequencies;
+        for (int i = 0; i < terms.size(); i++) {
+            frequencies.addTo(terms.getTermId(i), terms.getFrequency(i));
+            postings.add(pageId, terms.getTermId(i), terms.getRank(i));
         }
-        addIndex(new Index(increaseIndexIdAndGet(), pageId, lemma.getId(), rank));
     }
 
     private String formatPath(String path) {
@@ -152,17 +400,6 @@ public class Storage {
         return path;
     }
 
-    public void addPages(Set<Page> pages) throws IOException, SQLException {
-        for (Page page : pages) {
-            addPage(page);
-        }
-    }
-
-    public void addUsedLinks(Set<String> usedLinksList) {
-        for (String s : usedLinksList) {
-            addUsedLink(s);
-        }
-    }
     public boolean getIsStarted() {
         return isStarted;
     }
@@ -171,16 +408,8 @@ public class Storage {
         this.isStarted = isStarted;
     }
 
-//    public void addThread(Engine task) {
-//        taskList.add(task);
-//    }
-
-    public void addIndex(Index index) {
-        indexes.add(index);
-    }
-
-    public void addUsedLink(String usedLink) {
-        usedLinks.add(usedLink);
+    public boolean addUsedLink(String usedLink) {
+        return usedLinks.add(usedLink);
     }
 
     public void clearPages() {
@@ -188,11 +417,13 @@ public class Storage {
     }
 
     public void clearLemmas() {
-        lemms.clear();
+        for (SiteTerms terms : siteTerms.values()) {
+            terms.frequencies.clear();
+        }
     }
 
     public void clearIndexes() {
-        indexes.clear();
+        postings.clear();
     }
 
     public void clearUsedLinks() {
@@ -215,19 +446,19 @@ public class Storage {
         return pageId.incrementAndGet();
     }
 
-    public int increaseIndexIdAndGet() {
-        return indexId.incrementAndGet();
-    }
-
     public Set<Page> getPages() {
         return pages;
     }
 
-    public Map<String, List<Lemma>> getLemms() {
-        return lemms;
+    public SeenUrlSet getUsedLinks() {
+        return usedLinks;
     }
 
-    public Set<String> getUsedLinks() {
-        return usedLinks;
+    /**
+     * Леммы сайта: частоты, накопленные с прошлого сохранения, и номера уже сохраненных строк lemma.
+     */
+    private static class SiteTerms {
+        private final IntIntMap frequencies = new IntIntMap();
+        private final IntIntMap rows = new IntIntMap();
     }
 }
@@ -0,0 +1,101 @@
+package com.search.service;
+
+import org.springframework.stereotype.Service;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Словарь лемм: у каждой леммы один постоянный номер на все сайты, он же записывается в indexes.lemma_id.
+ * Словарь хранится в таблице term, загружается при первом обращении, новые леммы дописываются
+ * при сохранении пачки раньше индексов, которые на них ссылаются.
+ */
+@Service
+public class TermDictionary {
+
+    private final DBConnector dbConnector;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final List<String> lemmas = new ArrayList<>();
+    private final ConcurrentLinkedQueue<Integer> unsaved = new ConcurrentLinkedQueue<>();
+    private volatile boolean loaded = false;
+
+    public TermDictionary(DBConnector dbConnector) {
+        this.dbConnector = dbConnector;
+    }
+
+    /**
+     * Номер леммы; новой лемме выдается следующий номер.
+     */
+    public int idOf(String lemma) throws SQLException {
+        load();
+        Integer id = ids.get(lemma);
+        if (id != null) return id;
+        synchronized (lemmas) {
+            id = ids.get(lemma);
+            if (id != null) return id;
+            lemmas.add(lemma);
+            id = lemmas.size();
+            ids.put(lemma, id);
+        }
+        unsaved.add(id);
+        return id;
+    }
+
+    /**
+     * Номер леммы или 0, если такой леммы нет в индексе.
+     */
+    public int find(String lemma) throws SQLException {
+        load();
+        return ids.getOrDefault(lemma, 0);
+    }
+
+    public String lemmaOf(int id) {
+        synchronized (lemmas) {
+            return id > 0 && id <= lemmas.size() ? lemmas.get(id - 1) : null;
+        }
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    /**
+     * Записывает в базу леммы, получившие номер после прошлого сохранения.
+     */
+    public void save() throws SQLException {
+        Map<Integer, String> terms = new LinkedHashMap<>();
+        Integer id;
+        while ((id = unsaved.poll()) != null) {
+            terms.put(id, lemmaOf(id));
+        }
+        if (terms.isEmpty()) return;
+        try {
+            dbConnector.saveTerms(terms);
+        } catch (SQLException ex) {
+            unsaved.addAll(terms.keySet());
+            throw ex;
+        }
+    }
+
+    private void load() throws SQLException {
+        if (loaded) return;
+        synchronized (lemmas) {
+            if (loaded) return;
+            dbConnector.createTermTable();
+            Map<Integer, String> terms = dbConnector.getTerms();
+            for (Map.Entry<Integer, String> term : terms.entrySet()) {
+                while (lemmas.size() < term.getKey()) {
+                    lemmas.add(null);
+                }
+                lemmas.set(term.getKey() - 1, term.getValue());
+                ids.put(term.getValue(), term.getKey());
+            }
+            loaded = true;
+        }
+    }
+}
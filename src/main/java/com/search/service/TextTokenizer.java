@@ -0,0 +1,95 @@
+package com.search.service;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Разбивает текст на слова за один проход по символам: знаки препинания и символы выбрасываются
+ * (слово "из-за" дает "изза"), буквы переводятся в нижний регистр, словами разделяют пробельные символы.
+ * Результат совпадает с прежним разбором регулярными выражениями, кроме того, что пустые слова не выдаются,
+ * а неразрывный и другие юникодные пробелы тоже разделяют слова.
+ */
+public final class TextTokenizer {
+
+    /**
+     * Для этих языков и для букв İ и Σ нижний регистр зависит от локали или соседних букв - такие слова
+     * переводятся в нижний регистр целиком через String.toLowerCase, как раньше.
+     */
+    private static final boolean LOCALE_SENSITIVE =
+            Set.of("tr", "az", "lt").contains(Locale.getDefault().getLanguage());
+
+    private TextTokenizer() {
+    }
+
+    public static void tokenize(String text, Consumer<String> sink) {
+        if (text == null) return;
+        char[] word = new char[32];
+        int length = 0;
+        boolean contextual = false;
+        int i = 0;
+        while (i < text.length()) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (isSeparator(codePoint)) {
+                if (length > 0) {
+                    sink.accept(toWord(word, length, contextual));
+                    length = 0;
+                    contextual = false;
+                }
+                continue;
+            }
+            if (isPunctuationOrSymbol(codePoint)) continue;
+            int lower = Character.toLowerCase(codePoint);
+            if (lower != codePoint && (LOCALE_SENSITIVE || codePoint == 'İ' || codePoint == 'Σ')) {
+                contextual = true;
+                lower = codePoint;
+            }
+            if (length + 2 > word.length) {
+                char[] larger = new char[word.length * 2];
+                System.arraycopy(word, 0, larger, 0, length);
+                word = larger;
+            }
+            length += Character.toChars(lower, word, length);
+        }
+        if (length > 0) {
+            sink.accept(toWord(word, length, contextual));
+        }
+    }
+
+    private static String toWord(char[] word, int length, boolean contextual) {
+        String result = new String(word, 0, length);
+        return contextual ? result.toLowerCase() : result;
+    }
+
+    /**
+     * Пробельные символы в смысле \s регулярных выражений Java (пробел, \t, \n, \x0B, \f, \r) и юникодные
+     * пробелы и разделители строк: Jsoup оставляет неразрывный пробел в тексте символом U+00A0,
+     * и без этого слова по обе стороны склеивались бы в одно.
+     */
+    private static boolean isSeparator(int codePoint) {
+        return codePoint == ' ' || (codePoint >= '\t' && codePoint <= '\r') || Character.isSpaceChar(codePoint);
+    }
+
+    /**
+     * Классы \p{P} и \p{S}.
+     */
+    private static boolean isPunctuationOrSymbol(int codePoint) {
+        switch (Character.getType(codePoint)) {
+            case Character.CONNECTOR_PUNCTUATION:
+            case Character.DASH_PUNCTUATION:
+            case Character.START_PUNCTUATION:
+            case Character.END_PUNCTUATION:
+            case Character.INITIAL_QUOTE_PUNCTUATION:
+            case Character.FINAL_QUOTE_PUNCTUATION:
+            case Character.OTHER_PUNCTUATION:
+            case Character.MATH_SYMBOL:
+            case Character.CURRENCY_SYMBOL:
+            case Character.MODIFIER_SYMBOL:
+            case Character.OTHER_SYMBOL:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.search.bench;
+
+import com.search.scanning.CrawlerSettings;
+import com.search.scanning.UrlCanonicalizer;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Сравнивает прежнюю фильтрацию ссылок цепочкой replaceAll с UrlCanonicalizer:
+ * время на одну ссылку и число уникальных адресов, которые попали бы в очередь обхода.
+ * Запуск: java -cp target/test-classes:target/classes:... com.search.bench.CanonicalizerBenchmark [ссылок] [повторов]
+ */
+public class CanonicalizerBenchmark {
+
+    private static final String SITE = "https://www.example.ru";
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        List<String> links = generateLinks(count);
+        String base = SITE + "/catalog/section";
+        UrlCanonicalizer canonicalizer = new UrlCanonicalizer(SITE, new CrawlerSettings().getTrackingParams());
+
+        Set<String> legacyUnique = new HashSet<>();
+        Set<String> canonicalUnique = new HashSet<>();
+        long legacyTime = 0;
+        long canonicalTime = 0;
+        for (int round = 0; round < rounds; round++) {
+            legacyUnique.clear();
+            canonicalUnique.clear();
+            long start = System.nanoTime();
+            for (String link : links) {
+                String result = legacyFilter(link);
+                if (result != null) legacyUnique.add(result);
+            }
+            long middle = System.nanoTime();
+            for (String link : links) {
+                String result = canonicalizer.canonicalize(base, link);
+                if (result != null) canonicalUnique.add(result);
+            }
+            long end = System.nanoTime();
+            if (round >= rounds / 2) {
+                legacyTime += middle - start;
+                canonicalTime += end - middle;
+            }
+        }
+        int measured = rounds - rounds / 2;
+        System.out.printf("Ссылок: %d, повторов в замере: %d%n", links.size(), measured);
+        System.out.printf("replaceAll:       %8.1f нс/ссылка, уникальных адресов %d%n",
+                legacyTime / (double) measured / links.size(), legacyUnique.size());
+        System.out.printf("UrlCanonicalizer: %8.1f нс/ссылка, уникальных адресов %d%n",
+                canonicalTime / (double) measured / links.size(), canonicalUnique.size());
+    }
+
+    private static List<String> generateLinks(int count) {
+        Random random = new Random(42);
+        List<String> links = new ArrayList<>(count);
+        while (links.size() < count) {
+            int page = random.nextInt(Math.max(1, count / 8));
+            String path = "/news/" + page;
+            switch (random.nextInt(8)) {
+                case 0 -> links.add(path);
+                case 1 -> links.add(SITE + path + "/");
+                case 2 -> links.add(SITE + path + "#comments");
+                case 3 -> links.add("https://example.ru" + path);
+                case 4 -> links.add(SITE + path + "?utm_source=mail&utm_medium=link");
+                case 5 -> links.add(SITE + path + "?sort=date&page=2");
+                case 6 -> links.add(SITE + path + "?page=2&sort=date");
+                default -> links.add("http://www.example.ru/" + path);
+            }
+        }
+        return links;
+    }
+
+    private static String legacyFilter(String l) {
+        if (l.startsWith("/")) {
+            l = SITE + l;
+        }
+        l = l.replaceAll("//", "/");
+        l = l.replaceAll("https:/", "https://");
+        l = l.replaceAll("http:/", "http://");
+        if (!l.contains(SITE)) return null;
+        if (!l.startsWith("https:/") && !l.startsWith("http:/")) return null;
+        if (l.contains(".pdf") || l.contains(".svg")) return null;
+        if (l.length() < SITE.length() || !l.substring(0, SITE.length()).contains(SITE)) return null;
+        if (l.length() > 190) return null;
+        return l;
+    }
+}
@@ -0,0 +1,335 @@
+package com.search.bench;
+
+import com.search.model.Page;
+import com.search.model.PageState;
+import com.search.model.Site;
+import com.search.scanning.CrawlCheckpoint;
+import com.search.scanning.CrawlStats;
+import com.search.scanning.CrawlStorage;
+import com.search.scanning.CrawlerSettings;
+import com.search.scanning.Engine;
+import com.search.scanning.FetchClient;
+import com.search.scanning.FetchMode;
+import com.search.scanning.SeenUrlSet;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Замер скорости обхода без сети: поднимает локальный HTTP-сервер со сгенерированным сайтом
+ * и обходит его через Engine без базы данных. Печатает страниц в секунду, перцентили времени загрузки
+ * и пиковый объем кучи.
+ * Запуск: java -cp target/test-classes:target/classes:... com.search.bench.CrawlBenchmark pages=2000 fanout=10 depth=6
+ * page-size=8192 latency=20 error-rate=0.01 mode=pool workers=16
+ */
+public class CrawlBenchmark {
+
+    private static final String[] WORDS = {"поиск", "страница", "индекс", "лемма", "сайт", "ссылка", "текст",
+            "запрос", "документ", "слово", "search", "engine", "crawler", "page", "index"};
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int pages = Integer.parseInt(options.getOrDefault("pages", "2000"));
+        int fanout = Integer.parseInt(options.getOrDefault("fanout", "10"));
+        int depth = Integer.parseInt(options.getOrDefault("depth", "6"));
+        int pageSize = Integer.parseInt(options.getOrDefault("page-size", "8192"));
+        int latency = Integer.parseInt(options.getOrDefault("latency", "20"));
+        double errorRate = Double.parseDouble(options.getOrDefault("error-rate", "0.01"));
+
+        CrawlerSettings settings = new CrawlerSettings();
+        settings.setFetchMode(FetchMode.valueOf(options.getOrDefault("mode", "pool").toUpperCase(Locale.ROOT)));
+        settings.setWorkers(Integer.parseInt(options.getOrDefault("workers", "16")));
+        settings.setMaxHostConcurrency(Integer.parseInt(options.getOrDefault("max-host-concurrency", "32")));
+        settings.setCrawlDelay(Long.parseLong(options.getOrDefault("crawl-delay", "0")));
+        settings.setRetryBackoff(Long.parseLong(options.getOrDefault("retry-backoff", "100")));
+        settings.setTargetLatency(Long.parseLong(options.getOrDefault("target-latency", "1000")));
+        settings.setUseSitemaps(false);
+        settings.setResume(false);
+        settings.setSeenExpectedUrls(pages * 2);
+
+        FixtureSite fixture = new FixtureSite(pages, fanout, depth, pageSize, latency, errorRate);
+        HttpServer server = fixture.start();
+        String siteUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        Site site = new Site();
+        site.setUrl(siteUrl);
+        site.setName("fixture");
+
+        HeapSampler heapSampler = new HeapSampler();
+        MemoryStorage storage = new MemoryStorage(settings);
+        Engine engine = new Engine(List.of(site), storage, settings,
+                new CrawlCheckpoint(Files.createTempDirectory("crawl-benchmark")), new FetchClient(settings));
+        heapSampler.start();
+        try {
+            engine.crawl();
+        } finally {
+            heapSampler.interrupt();
+            server.stop(0);
+            fixture.shutdown();
+        }
+
+        CrawlStats stats = engine.getStats();
+        System.out.printf("Сайт: %d страниц (достижимо %d), ветвление %d, глубина %d, размер страницы %d байт%n",
+                pages, fixture.reachablePages(), fanout, depth, pageSize);
+        System.out.printf("Задержка сервера %d мс, доля ошибок %.3f, режим %s, потоков %d%n",
+                latency, errorRate, settings.getFetchMode(), settings.getWorkers());
+        System.out.printf("Загружено страниц: %d, сохранено: %d, запросов к серверу: %d, ответов с ошибкой: %d%n",
+                stats.getTotalPages(), storage.getSavedPages(), fixture.getRequests(), fixture.getErrors());
+        System.out.printf("Время: %.2f с, %.1f стр/с%n", stats.getElapsedSeconds(),
+                stats.getTotalPages() / stats.getElapsedSeconds());
+        System.out.printf("Время загрузки: p50 %d мс, p90 %d мс, p99 %d мс%n", stats.getLatencyPercentile(50),
+                stats.getLatencyPercentile(90), stats.getLatencyPercentile(99));
+        System.out.printf("Повторов: %d, страниц с ошибкой после всех попыток: %d, лимит запросов к хосту: %d%n",
+                stats.getRetries(), stats.getFailedPages(), engine.getHostLimit(site.getId()));
+        System.out.printf("Пиковый объем кучи: %.1f МБ%n", heapSampler.getPeak() / 1024.0 / 1024.0);
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals > 0) {
+                options.put(arg.substring(0, equals), arg.substring(equals + 1));
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Сайт-дерево: у страницы k дочерние страницы k * fanout + 1 ... k * fanout + fanout до заданной глубины,
+     * плюс fanout / 2 случайных ссылок на любые страницы, часть из них - с метками и фрагментами.
+     */
+    private static class FixtureSite {
+        private final int pages;
+        private final int fanout;
+        private final int depth;
+        private final int latency;
+        private final double errorRate;
+        private final String filler;
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "fixture-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        FixtureSite(int pages, int fanout, int depth, int pageSize, int latency, double errorRate) {
+            this.pages = pages;
+            this.fanout = Math.max(1, fanout);
+            this.depth = depth;
+            this.latency = latency;
+            this.errorRate = errorRate;
+            StringBuilder text = new StringBuilder(pageSize + 16);
+            Random random = new Random(7);
+            while (text.length() < pageSize) {
+                text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            this.filler = text.toString();
+        }
+
+        HttpServer start() throws IOException {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+            HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+            server.createContext("/", this::handle);
+            server.setExecutor(executor);
+            server.start();
+            return server;
+        }
+
+        void shutdown() {
+            executor.shutdownNow();
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            requests.incrementAndGet();
+            try (exchange) {
+                String path = exchange.getRequestURI().getPath();
+                int page = pageNumber(path);
+                if (latency > 0) {
+                    Thread.sleep(latency + ThreadLocalRandom.current().nextInt(latency / 2 + 1));
+                }
+                if (page < 0) {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+                if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+                    errors.incrementAndGet();
+                    exchange.sendResponseHeaders(503, -1);
+                    return;
+                }
+                byte[] body = render(page).getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private int pageNumber(String path) {
+            if (path.equals("/")) return 0;
+            if (!path.startsWith("/page/")) return -1;
+            try {
+                int page = Integer.parseInt(path.substring("/page/".length()));
+                return page >= 0 && page < pages ? page : -1;
+            } catch (NumberFormatException ex) {
+                return -1;
+            }
+        }
+
+        private String render(int page) {
+            StringBuilder html = new StringBuilder(filler.length() + fanout * 64 + 256);
+            html.append("<html><head><title>Страница ").append(page).append("</title></head><body><p>")
+                    .append(filler).append("</p>");
+            if (levelOf(page) < depth) {
+                for (long child = (long) page * fanout + 1; child <= (long) page * fanout + fanout && child < pages; child++) {
+                    html.append("<a href=\"/page/").append(child).append("\">").append(child).append("</a>");
+                }
+            }
+            Random random = new Random(page);
+            for (int i = 0; i < fanout / 2; i++) {
+                int target = 1 + random.nextInt(Math.max(1, pages - 1));
+                html.append("<a href=\"/page/").append(target);
+                switch (random.nextInt(4)) {
+                    case 0 -> html.append("?utm_source=bench");
+                    case 1 -> html.append("#section");
+                    default -> {
+                    }
+                }
+                html.append("\">").append(target).append("</a>");
+            }
+            return html.append("</body></html>").toString();
+        }
+
+        private int levelOf(int page) {
+            int level = 0;
+            while (page > 0) {
+                page = (page - 1) / fanout;
+                level++;
+            }
+            return level;
+        }
+
+        int reachablePages() {
+            int reachable = 0;
+            for (int page = 0; page < pages; page++) {
+                if (levelOf(page) <= depth) reachable++;
+            }
+            return reachable;
+        }
+
+        long getRequests() {
+            return requests.get();
+        }
+
+        long getErrors() {
+            return errors.get();
+        }
+    }
+
+    /**
+     * Хранилище без базы: считает сохраненные страницы и не держит их содержимое.
+     */
+    private static class MemoryStorage implements CrawlStorage {
+        private final SeenUrlSet usedLinks;
+        private final AtomicInteger pageId = new AtomicInteger();
+        private final AtomicInteger savedPages = new AtomicInteger();
+
+        MemoryStorage(CrawlerSettings settings) {
+            this.usedLinks = new SeenUrlSet(settings.getSeenExpectedUrls());
+        }
+
+        @Override
+        public boolean addUsedLink(String url) {
+            return usedLinks.add(url);
+        }
+
+        @Override
+        public SeenUrlSet getUsedLinks() {
+            return usedLinks;
+        }
+
+        @Override
+        public boolean isStop() {
+            return false;
+        }
+
+        @Override
+        public PageState getKnownPage(String path) {
+            return null;
+        }
+
+        @Override
+        public String loadPageContent(int pageId) {
+            return "";
+        }
+
+        @Override
+        public void keepUnchangedPage(PageState state) {
+        }
+
+        @Override
+        public int increasePageIdAndGet() {
+            return pageId.incrementAndGet();
+        }
+
+        @Override
+        public boolean addPage(Page page) {
+            savedPages.incrementAndGet();
+            return true;
+        }
+
+        @Override
+        public void persist() {
+        }
+
+        int getSavedPages() {
+            return savedPages.get();
+        }
+    }
+
+    private static class HeapSampler extends Thread {
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private volatile long peak = 0;
+
+        HeapSampler() {
+            super("heap-sampler");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (!isInterrupted()) {
+                peak = Math.max(peak, memory.getHeapMemoryUsage().getUsed());
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException ex) {
+                    return;
+                }
+            }
+        }
+
+        long getPeak() {
+            return Math.max(peak, memory.getHeapMemoryUsage().getUsed());
+        }
+    }
+}
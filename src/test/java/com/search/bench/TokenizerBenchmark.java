@@ -0,0 +1,155 @@
+package com.search.bench;
+
+import com.search.scanning.CrawlerSettings;
+import com.search.service.LemmaScanner;
+import com.search.service.Script;
+import org.apache.lucene.morphology.LuceneMorphology;
+import org.apache.lucene.morphology.WrongCharaterException;
+import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+import org.jsoup.Jsoup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Сравнение разбора текста на леммы: прежний splitText на регулярных выражениях с removeAll
+ * против однопроходного токенизатора с кэшем морфологии. Берет сохраненные HTML-страницы,
+ * проверяет, что обе реализации дают одинаковые леммы с одинаковыми частотами, и печатает время.
+ * Прежний разбор отбрасывал латиницу и числа, поэтому сравниваются только русские леммы.
+ * Запуск: java -cp target/test-classes:target/classes:... com.search.bench.TokenizerBenchmark pages=/path/to/html iterations=5
+ */
+public class TokenizerBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals > 0) {
+                options.put(arg.substring(0, equals), arg.substring(equals + 1));
+            }
+        }
+        if (!options.containsKey("pages")) {
+            System.out.println("Укажите файл или каталог с HTML-страницами: pages=/path/to/html [iterations=5]");
+            return;
+        }
+        int iterations = Integer.parseInt(options.getOrDefault("iterations", "5"));
+        List<String> texts = loadTexts(Path.of(options.get("pages")));
+        long chars = texts.stream().mapToLong(String::length).sum();
+
+        LuceneMorphology morphology = new RussianLuceneMorphology();
+        CrawlerSettings settings = new CrawlerSettings();
+        LemmaScanner scanner = new LemmaScanner(null, settings);
+
+        int mismatches = 0;
+        for (String text : texts) {
+            Map<String, Integer> expected = legacyScan(morphology, text);
+            expected.keySet().removeIf(lemma -> Script.of(lemma) != Script.RUSSIAN);
+            Map<String, Integer> actual = scanner.scan(text);
+            actual.keySet().removeIf(lemma -> Script.of(lemma) != Script.RUSSIAN);
+            if (!expected.equals(actual)) {
+                mismatches++;
+            }
+        }
+
+        long legacyTime = Long.MAX_VALUE;
+        long currentTime = Long.MAX_VALUE;
+        long checksum = 0;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            for (String text : texts) {
+                checksum += legacyScan(morphology, text).size();
+            }
+            legacyTime = Math.min(legacyTime, System.nanoTime() - start);
+            start = System.nanoTime();
+            for (String text : texts) {
+                checksum += scanner.count(text).size();
+            }
+            currentTime = Math.min(currentTime, System.nanoTime() - start);
+        }
+
+        System.out.printf("Страниц: %d, символов текста: %d, повторов: %d (контрольная сумма %d)%n",
+                texts.size(), chars, iterations, checksum);
+        System.out.printf("Страниц с разными леммами: %d%n", mismatches);
+        System.out.printf("Прежний разбор: %.1f мс, %.1f МБ текста/с%n", legacyTime / 1e6, chars / (legacyTime / 1e9) / 1e6);
+        System.out.printf("Новый разбор:   %.1f мс, %.1f МБ текста/с, ускорение %.1f раз%n", currentTime / 1e6,
+                chars / (currentTime / 1e9) / 1e6, (double) legacyTime / currentTime);
+        System.out.printf("Кэш морфологии: %d словоформ, попаданий %.1f%%%n", scanner.getMorphologyCache().size(),
+                scanner.getMorphologyCache().getHitRate() * 100);
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static List<String> loadTexts(Path path) throws IOException {
+        List<Path> files;
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> walk = Files.walk(path)) {
+                files = walk.filter(Files::isRegularFile).sorted().toList();
+            }
+        } else {
+            files = List.of(path);
+        }
+        List<String> texts = new ArrayList<>();
+        for (Path file : files) {
+            texts.add(Jsoup.parse(file.toFile(), null).text());
+        }
+        return texts;
+    }
+
+    /**
+     * Разбор в том виде, в каком он был в LemmaScanner.scan до однопроходного токенизатора.
+     */
+    private static Map<String, Integer> legacyScan(LuceneMorphology luceneMorph, String text) {
+        Map<String, Integer> lemmsMap = new HashMap<>();
+        List<String> words = legacySplitText(text);
+        List<String> official = new ArrayList<>();
+        for (String word : words) {
+            try {
+                List<String> infos = luceneMorph.getMorphInfo(word);
+                StringBuilder infoString = new StringBuilder();
+                for (String info : infos) {
+                    infoString.append(info);
+                }
+                if (infoString.toString().contains("СОЮЗ")
+                        || infoString.toString().contains("МЕЖД")
+                        || infoString.toString().contains("ПРЕДЛ")
+                        || infoString.toString().contains("ЧАСТ")) {
+                    official.add(word);
+                }
+            } catch (WrongCharaterException | ArrayIndexOutOfBoundsException ex) {
+                official.add(word);
+            }
+        }
+        words.removeAll(official);
+        for (String word : words) {
+            List<String> wordBaseForms = luceneMorph.getNormalForms(word);
+            for (String form : wordBaseForms) {
+                if (lemmsMap.containsKey(form)) {
+                    int value = lemmsMap.get(form) + 1;
+                    lemmsMap.replace(form, value);
+                } else {
+                    lemmsMap.put(form, 1);
+                }
+            }
+        }
+        return lemmsMap;
+    }
+
+    /**
+     * Юникодные пробелы здесь тоже разделяют слова, как в токенизаторе: прежний разбор склеивал слова
+     * вокруг неразрывного пробела, и такие склейки отбрасывались морфологией.
+     */
+    private static List<String> legacySplitText(String text) {
+        text = text.replaceAll("[\\p{P}\\p{S}]", "").toLowerCase();
+        text = text.replaceAll(" —", "");
+        text = text.replaceAll("[\\s\\p{Z}]+", " ");
+        return new ArrayList<>(Arrays.asList(text.split(" ")));
+    }
+}
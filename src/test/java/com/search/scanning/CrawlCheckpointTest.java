@@ -0,0 +1,115 @@
+package com.search.scanning;
+
+import com.search.model.Site;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CrawlCheckpointTest {
+
+    private Path dir;
+    private CrawlCheckpoint checkpoint;
+    private Site first;
+    private Site second;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("crawl-checkpoint-test");
+        checkpoint = new CrawlCheckpoint(dir.resolve("state"));
+        first = site(1, "https://a.ru");
+        second = site(2, "https://b.ru");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private static Site site(int id, String url) {
+        Site site = mock(Site.class);
+        when(site.getId()).thenReturn(id);
+        when(site.getUrl()).thenReturn(url);
+        return site;
+    }
+
+    @Test
+    void resumeRestoresQueueAndSeenUrls() throws IOException {
+        SeenUrlSet seen = new SeenUrlSet(16);
+        seen.add("https://a.ru/1");
+        seen.add("https://b.ru/страница");
+        checkpoint.write(List.of(new CrawlTask("https://a.ru/1", 1, first, 7),
+                new CrawlTask("https://b.ru/страница", 3, second)), seen);
+        assertFalse(checkpoint.exists(), "до commit точка не видна");
+        checkpoint.commit();
+        assertTrue(checkpoint.exists());
+
+        SeenUrlSet restored = new SeenUrlSet(16);
+        List<CrawlTask> tasks = checkpoint.load(List.of(first, second), restored);
+        assertEquals(2, tasks.size());
+        assertEquals("https://a.ru/1", tasks.get(0).getUrl());
+        assertEquals(1, tasks.get(0).getDepth());
+        assertEquals(7, tasks.get(0).getPriority());
+        assertSame(first, tasks.get(0).getSite());
+        assertEquals("https://b.ru/страница", tasks.get(1).getUrl());
+        assertEquals("b.ru", tasks.get(1).getHost());
+        assertEquals(3, tasks.get(1).getDepth());
+        assertEquals(2, restored.size());
+        assertTrue(restored.contains("https://b.ru/страница"));
+    }
+
+    @Test
+    void uncommittedWriteKeepsPreviousCheckpoint() throws IOException {
+        checkpoint.write(List.of(new CrawlTask("https://a.ru/old", 1, first)), new SeenUrlSet(16));
+        checkpoint.commit();
+        checkpoint.write(List.of(new CrawlTask("https://a.ru/new", 1, first)), new SeenUrlSet(16));
+        List<CrawlTask> tasks = checkpoint.load(List.of(first), new SeenUrlSet(16));
+        assertEquals(List.of("https://a.ru/old"), tasks.stream().map(CrawlTask::getUrl).toList());
+    }
+
+    @Test
+    void tasksOfRemovedSitesAreDropped() throws IOException {
+        checkpoint.write(List.of(new CrawlTask("https://a.ru/1", 1, first),
+                new CrawlTask("https://b.ru/1", 1, second)), new SeenUrlSet(16));
+        checkpoint.commit();
+        List<CrawlTask> tasks = checkpoint.load(List.of(second), new SeenUrlSet(16));
+        assertEquals(List.of("https://b.ru/1"), tasks.stream().map(CrawlTask::getUrl).toList());
+    }
+
+    @Test
+    void foreignFileIsRejected() throws IOException {
+        Files.createDirectories(dir.resolve("state"));
+        Files.write(dir.resolve("state").resolve("crawl.checkpoint"), new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        assertThrows(IOException.class, () -> checkpoint.load(List.of(first), new SeenUrlSet(16)));
+    }
+
+    @Test
+    void deleteRemovesCommittedAndTemporaryFiles() throws IOException {
+        checkpoint.write(List.of(), new SeenUrlSet(16));
+        checkpoint.commit();
+        checkpoint.write(List.of(), new SeenUrlSet(16));
+        checkpoint.delete();
+        assertFalse(checkpoint.exists());
+        try (Stream<Path> files = Files.list(dir.resolve("state"))) {
+            assertEquals(0, files.count());
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.search.scanning;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FetchClientTest {
+
+    private HttpServer server;
+    private ExecutorService handlers;
+    private FetchClient client;
+    private String root;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        handlers = Executors.newCachedThreadPool();
+        server.setExecutor(handlers);
+        server.createContext("/page", exchange -> {
+            byte[] body = "<html><title>Страница</title></html>".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/gzip", exchange -> {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write("x".repeat(10_000).getBytes(StandardCharsets.UTF_8));
+            }
+            exchange.getResponseHeaders().add("Content-Type", "text/html");
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, compressed.size());
+            try (OutputStream out = exchange.getResponseBody()) {
+                compressed.writeTo(out);
+            }
+        });
+        server.createContext("/file.pdf", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "application/pdf");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(new byte[100_000]);
+            } catch (IOException ignored) {
+                // клиент закрыл ответ, не дочитав
+            }
+        });
+        server.createContext("/trickle", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/html");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (int i = 0; i < 100; i++) {
+                    out.write('a');
+                    out.flush();
+                    Thread.sleep(50);
+                }
+            } catch (InterruptedException | IOException ignored) {
+            }
+        });
+        server.createContext("/stall", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/html");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write('a');
+                out.flush();
+                Thread.sleep(5_000);
+            } catch (InterruptedException | IOException ignored) {
+            }
+        });
+        server.start();
+        root = "http://127.0.0.1:" + server.getAddress().getPort();
+        CrawlerSettings settings = new CrawlerSettings();
+        settings.setHttp2(false);
+        client = new FetchClient(settings);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    @Test
+    void readsWholeBody() throws Exception {
+        FetchClient.Response response = client.get(root + "/page", Map.of(), 2_000, 0);
+        assertEquals(200, response.getStatus());
+        assertEquals("text/html", response.getContentType());
+        assertEquals("utf-8", response.getCharset());
+        assertEquals("<html><title>Страница</title></html>", response.getBodyAsString());
+        assertFalse(response.isTruncated());
+    }
+
+    @Test
+    void readStopsAtLimitAndReportsTruncation() throws IOException {
+        long deadline = System.nanoTime() + 1_000_000_000L;
+        FetchClient.Response longer = new FetchClient.Response(200, root, null);
+        FetchClient.read(new ByteArrayInputStream(new byte[20]), 10, deadline, longer);
+        assertEquals(10, longer.getBody().length);
+        assertTrue(longer.isTruncated());
+
+        FetchClient.Response exact = new FetchClient.Response(200, root, null);
+        FetchClient.read(new ByteArrayInputStream(new byte[10]), 10, deadline, exact);
+        assertEquals(10, exact.getBody().length);
+        assertFalse(exact.isTruncated());
+
+        FetchClient.Response unlimited = new FetchClient.Response(200, root, null);
+        FetchClient.read(new ByteArrayInputStream(new byte[100_000]), 0, deadline, unlimited);
+        assertEquals(100_000, unlimited.getBody().length);
+        assertFalse(unlimited.isTruncated());
+    }
+
+    @Test
+    void readAfterDeadlineTimesOut() {
+        FetchClient.Response response = new FetchClient.Response(200, root, null);
+        assertThrows(HttpTimeoutException.class, () -> FetchClient.read(new ByteArrayInputStream(new byte[10]), 0,
+                System.nanoTime() - 1, response));
+    }
+
+    @Test
+    void limitAppliesToDecompressedBody() throws Exception {
+        FetchClient.Response response = client.get(root + "/gzip", Map.of(), 2_000, 4_096);
+        assertEquals(4_096, response.getBody().length);
+        assertTrue(response.isTruncated());
+        FetchClient.Response whole = client.get(root + "/gzip", Map.of(), 2_000, 0);
+        assertEquals("x".repeat(10_000), whole.getBodyAsString());
+    }
+
+    @Test
+    void rejectedContentTypeIsNotRead() throws Exception {
+        FetchClient.Response response = client.get(root + "/file.pdf", Map.of(), 2_000, 0, "text/html"::equals);
+        assertTrue(response.isSkipped());
+        assertEquals("application/pdf", response.getContentType());
+        assertEquals(0, response.getBody().length);
+        FetchClient.Response page = client.get(root + "/page", Map.of(), 2_000, 0, "text/html"::equals);
+        assertFalse(page.isSkipped());
+    }
+
+    @Test
+    void trickledBodyTimesOut() {
+        long start = System.currentTimeMillis();
+        assertThrows(HttpTimeoutException.class, () -> client.get(root + "/trickle", Map.of(), 500, 0));
+        assertTrue(System.currentTimeMillis() - start < 3_000);
+    }
+
+    @Test
+    void stalledBodyTimesOut() {
+        long start = System.currentTimeMillis();
+        assertThrows(HttpTimeoutException.class, () -> client.get(root + "/stall", Map.of(), 500, 0));
+        assertTrue(System.currentTimeMillis() - start < 3_000);
+    }
+}
@@ -0,0 +1,163 @@
+package com.search.scanning;
+
+import com.search.model.Site;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrontierTest {
+
+    private final Site site = new Site();
+    private HostRateController rateController;
+    private Frontier frontier;
+
+    @BeforeEach
+    void setUp() {
+        site.setUrl("https://a.ru");
+        CrawlerSettings settings = new CrawlerSettings();
+        settings.setPerHostConcurrency(1);
+        settings.setMaxHostConcurrency(1);
+        rateController = new HostRateController(settings);
+        frontier = new Frontier(rateController, 0);
+    }
+
+    private CrawlTask task(String url, int depth) {
+        return new CrawlTask(url, depth, site);
+    }
+
+    private List<String> drain() throws InterruptedException {
+        List<String> urls = new ArrayList<>();
+        CrawlTask task;
+        while ((task = frontier.take()) != null) {
+            urls.add(task.getUrl());
+            frontier.complete(task);
+        }
+        return urls;
+    }
+
+    @Test
+    void hostQueueIsBreadthFirstThenByPriorityThenFifo() throws InterruptedException {
+        frontier.add(task("https://a.ru/deep", 2));
+        frontier.add(new CrawlTask("https://a.ru/low", 1, site, 1));
+        frontier.add(new CrawlTask("https://a.ru/high", 1, site, 5));
+        frontier.add(new CrawlTask("https://a.ru/low2", 1, site, 1));
+        frontier.add(task("https://a.ru/", 0));
+        assertEquals(List.of("https://a.ru/", "https://a.ru/high", "https://a.ru/low", "https://a.ru/low2",
+                "https://a.ru/deep"), drain());
+    }
+
+    @Test
+    void hostsTakeTurns() throws InterruptedException {
+        frontier.add(task("https://a.ru/1", 1));
+        frontier.add(task("https://a.ru/2", 1));
+        frontier.add(task("https://b.ru/1", 1));
+        frontier.add(task("https://b.ru/2", 1));
+        assertEquals(List.of("https://a.ru/1", "https://b.ru/1", "https://a.ru/2", "https://b.ru/2"), drain());
+    }
+
+    @Test
+    void busyHostIsSkippedUntilItsRequestCompletes() throws InterruptedException {
+        frontier.add(task("https://a.ru/1", 1));
+        frontier.add(task("https://a.ru/2", 1));
+        frontier.add(task("https://b.ru/1", 1));
+        CrawlTask first = frontier.take();
+        assertEquals("https://a.ru/1", first.getUrl());
+        assertEquals("https://b.ru/1", frontier.take().getUrl());
+        frontier.complete(first);
+        assertEquals("https://a.ru/2", frontier.take().getUrl());
+    }
+
+    @Test
+    void crawlDelaySpacesRequestsToHost() throws InterruptedException {
+        frontier.setHostCrawlDelay("a.ru", 300);
+        frontier.add(task("https://a.ru/1", 1));
+        frontier.add(task("https://a.ru/2", 1));
+        frontier.complete(frontier.take());
+        long start = System.currentTimeMillis();
+        frontier.complete(frontier.take());
+        assertTrue(System.currentTimeMillis() - start >= 250);
+    }
+
+    @Test
+    void pausedHostWaitsWhileOthersProceed() throws InterruptedException {
+        frontier.add(task("https://a.ru/1", 1));
+        frontier.add(task("https://b.ru/1", 1));
+        rateController.onOverload("a.ru", 0, 300);
+        long start = System.currentTimeMillis();
+        CrawlTask task = frontier.take();
+        assertEquals("https://b.ru/1", task.getUrl());
+        frontier.complete(task);
+        assertEquals("https://a.ru/1", frontier.take().getUrl());
+        assertTrue(System.currentTimeMillis() - start >= 250);
+    }
+
+    @Test
+    void requeuedTaskWaitsForHostUntilInFlightCompletes() throws Exception {
+        CrawlerSettings settings = new CrawlerSettings();
+        settings.setPerHostConcurrency(2);
+        settings.setMaxHostConcurrency(2);
+        frontier = new Frontier(new HostRateController(settings), 0);
+        frontier.add(task("https://a.ru/1", 1));
+        frontier.add(task("https://a.ru/2", 1));
+        CrawlTask running = frontier.take();
+        CrawlTask refused = frontier.take();
+        frontier.requeue(refused, true);
+
+        AtomicReference<CrawlTask> taken = new AtomicReference<>();
+        Thread taker = new Thread(() -> {
+            try {
+                taken.set(frontier.take());
+            } catch (InterruptedException ignored) {
+            }
+        });
+        taker.start();
+        taker.join(200);
+        assertTrue(taker.isAlive(), "хост заблокирован, пока не завершится начатая загрузка");
+        frontier.complete(running);
+        taker.join(2_000);
+        assertSame(refused, taken.get());
+    }
+
+    @Test
+    void takeReturnsNullWhenDoneOrClosed() throws Exception {
+        assertNull(frontier.take());
+        frontier.add(task("https://a.ru/1", 1));
+        CrawlTask task = frontier.take();
+        Thread waiter = new Thread(() -> {
+            try {
+                assertNull(frontier.take());
+            } catch (InterruptedException ignored) {
+            }
+        });
+        waiter.start();
+        waiter.join(100);
+        assertTrue(waiter.isAlive(), "задача в работе может добавить новые ссылки");
+        frontier.complete(task);
+        waiter.join(2_000);
+        assertFalse(waiter.isAlive());
+
+        frontier.add(task("https://a.ru/2", 1));
+        frontier.close();
+        assertNull(frontier.take());
+    }
+
+    @Test
+    void snapshotHoldsQueuedAndInFlightTasksOnce() throws InterruptedException {
+        frontier.add(task("https://a.ru/1", 1));
+        frontier.add(task("https://a.ru/2", 1));
+        frontier.add(task("https://a.ru/2", 2));
+        CrawlTask inFlight = frontier.take();
+        List<String> urls = frontier.snapshot().stream().map(CrawlTask::getUrl).toList();
+        assertEquals(List.of(inFlight.getUrl(), "https://a.ru/2"), urls);
+        assertEquals(2, frontier.size());
+    }
+}
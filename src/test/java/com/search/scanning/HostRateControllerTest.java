@@ -0,0 +1,114 @@
+package com.search.scanning;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HostRateControllerTest {
+
+    private static final String HOST = "site.ru";
+
+    private CrawlerSettings settings;
+
+    @BeforeEach
+    void setUp() {
+        settings = new CrawlerSettings();
+        settings.setPerHostConcurrency(2);
+        settings.setMaxHostConcurrency(4);
+        settings.setTargetLatency(100);
+        settings.setFetchTimeout(10_000);
+        settings.setRetryBackoff(1_000);
+    }
+
+    @Test
+    void initialLimitIsClampedToMaximum() {
+        assertEquals(2, new HostRateController(settings).getLimit(HOST));
+        settings.setPerHostConcurrency(10);
+        assertEquals(4, new HostRateController(settings).getLimit(HOST));
+        settings.setPerHostConcurrency(0);
+        assertEquals(1, new HostRateController(settings).getLimit(HOST));
+    }
+
+    @Test
+    void fastResponsesGrowLimitByAboutOnePerWindow() {
+        HostRateController controller = new HostRateController(settings);
+        controller.onSuccess(HOST, 10);
+        assertEquals(2, controller.getLimit(HOST));
+        controller.onSuccess(HOST, 10);
+        assertEquals(2, controller.getLimit(HOST));
+        controller.onSuccess(HOST, 10);
+        assertEquals(3, controller.getLimit(HOST));
+        for (int i = 0; i < 100; i++) {
+            controller.onSuccess(HOST, 10);
+        }
+        assertEquals(4, controller.getLimit(HOST));
+        assertEquals(0, controller.getDecreases(HOST));
+    }
+
+    @Test
+    void slowResponseDecreasesLimitByFifth() {
+        settings.setPerHostConcurrency(4);
+        HostRateController controller = new HostRateController(settings);
+        controller.onSuccess(HOST, 500);
+        assertEquals(3, controller.getLimit(HOST));
+        assertEquals(1, controller.getDecreases(HOST));
+        for (int i = 0; i < 20; i++) {
+            controller.onSuccess(HOST, 500);
+        }
+        assertEquals(1, controller.getLimit(HOST));
+    }
+
+    @Test
+    void overloadHalvesLimitDownToOne() {
+        settings.setPerHostConcurrency(4);
+        HostRateController controller = new HostRateController(settings);
+        controller.onOverload(HOST, 0, 0);
+        assertEquals(2, controller.getLimit(HOST));
+        controller.onOverload(HOST, 0, 0);
+        controller.onOverload(HOST, 0, 0);
+        assertEquals(1, controller.getLimit(HOST));
+        assertEquals(3, controller.getDecreases(HOST));
+        assertEquals(4, controller.getLimit("other.ru"), "лимиты хостов независимы");
+    }
+
+    @Test
+    void overloadPausesHostWithExponentialBackoff() {
+        HostRateController controller = new HostRateController(settings);
+        assertEquals(1_000, controller.onOverload(HOST, 0, 0));
+        assertEquals(4_000, controller.onOverload(HOST, 2, 0));
+        assertEquals(60_000, controller.onOverload(HOST, 30, 0));
+        long before = System.currentTimeMillis();
+        assertEquals(0, controller.getPausedUntil("other.ru"));
+        assertTrue(controller.getPausedUntil(HOST) >= before + 50_000);
+    }
+
+    @Test
+    void retryAfterOverridesBackoffButIsCapped() {
+        HostRateController controller = new HostRateController(settings);
+        assertEquals(30_000, controller.onOverload(HOST, 0, 30_000));
+        assertEquals(600_000, controller.onOverload(HOST, 0, 3_600_000));
+    }
+
+    @Test
+    void laterShorterPauseDoesNotShortenCurrentOne() {
+        HostRateController controller = new HostRateController(settings);
+        controller.onOverload(HOST, 0, 30_000);
+        long pausedUntil = controller.getPausedUntil(HOST);
+        controller.onOverload(HOST, 0, 1_000);
+        assertEquals(pausedUntil, controller.getPausedUntil(HOST));
+    }
+
+    @Test
+    void timeoutFollowsSmoothedLatencyWithinBounds() {
+        HostRateController controller = new HostRateController(settings);
+        assertEquals(10_000, controller.getTimeout(HOST));
+        controller.onSuccess(HOST, 100);
+        assertEquals(2_000, controller.getTimeout(HOST));
+        controller.onSuccess(HOST, 1_100);
+        assertEquals(300, controller.getLatency(HOST));
+        controller.onSuccess(HOST, 20_000);
+        assertEquals(10_000, controller.getTimeout(HOST));
+    }
+}
@@ -0,0 +1,129 @@
+package com.search.scanning;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RobotsRulesTest {
+
+    private static final String AGENT = "SearchBot/1.0";
+
+    private static RobotsRules parse(String... lines) {
+        return RobotsRules.parse(String.join("\r\n", lines), AGENT);
+    }
+
+    @Test
+    void longestMatchWins() {
+        RobotsRules rules = parse(
+                "User-agent: *",
+                "Disallow: /private",
+                "Allow: /private/public",
+                "Disallow: /private/public/secret");
+        assertTrue(rules.isAllowed("https://a.ru/news"));
+        assertFalse(rules.isAllowed("https://a.ru/private"));
+        assertFalse(rules.isAllowed("https://a.ru/private/x"));
+        assertTrue(rules.isAllowed("https://a.ru/private/public/x"));
+        assertFalse(rules.isAllowed("https://a.ru/private/public/secret/x"));
+    }
+
+    @Test
+    void allowWinsOnEqualLength() {
+        RobotsRules rules = parse(
+                "User-agent: *",
+                "Disallow: /page",
+                "Allow: /page");
+        assertTrue(rules.isAllowed("https://a.ru/page"));
+        RobotsRules reversed = parse(
+                "User-agent: *",
+                "Allow: /page",
+                "Disallow: /page");
+        assertTrue(reversed.isAllowed("https://a.ru/page"));
+    }
+
+    @Test
+    void wildcardAndEndAnchor() {
+        RobotsRules rules = parse(
+                "User-agent: *",
+                "Disallow: /*.php$",
+                "Disallow: /*?sort=");
+        assertFalse(rules.isAllowed("https://a.ru/catalog/index.php"));
+        assertTrue(rules.isAllowed("https://a.ru/catalog/index.phps"));
+        assertTrue(rules.isAllowed("https://a.ru/catalog/index.php?page=2"));
+        assertFalse(rules.isAllowed("https://a.ru/catalog/tv?sort=price"));
+        assertTrue(rules.isAllowed("https://a.ru/catalog/tv#sort=price"));
+    }
+
+    @Test
+    void longerAllowOverridesWildcardDisallow() {
+        RobotsRules rules = parse(
+                "User-agent: *",
+                "Disallow: /",
+                "Allow: /$",
+                "Disallow: /*.php",
+                "Allow: /catalog/");
+        assertTrue(rules.isAllowed("https://a.ru/"));
+        assertTrue(rules.isAllowed("https://a.ru"));
+        assertFalse(rules.isAllowed("https://a.ru/about"));
+        assertFalse(rules.isAllowed("https://a.ru/news/index.php"));
+        assertTrue(rules.isAllowed("https://a.ru/catalog/tv"));
+        assertTrue(rules.isAllowed("https://a.ru/catalog/index.php"));
+    }
+
+    @Test
+    void emptyDisallowAllowsEverything() {
+        RobotsRules rules = parse(
+                "User-agent: *",
+                "Disallow:");
+        assertTrue(rules.isAllowed("https://a.ru/any/path"));
+    }
+
+    @Test
+    void mostSpecificAgentGroupIsSelected() {
+        RobotsRules rules = parse(
+                "User-agent: *",
+                "Disallow: /",
+                "",
+                "User-agent: OtherBot",
+                "User-agent: searchbot",
+                "Disallow: /admin # служебные страницы",
+                "Crawl-delay: 0.5");
+        assertTrue(rules.isAllowed("https://a.ru/news"));
+        assertFalse(rules.isAllowed("https://a.ru/admin/users"));
+        assertEquals(500, rules.getCrawlDelay());
+    }
+
+    @Test
+    void otherAgentsGroupsAreIgnored() {
+        RobotsRules rules = parse(
+                "User-agent: OtherBot",
+                "Disallow: /",
+                "Crawl-delay: 10",
+                "Sitemap: https://a.ru/sitemap.xml");
+        assertTrue(rules.isAllowed("https://a.ru/news"));
+        assertEquals(-1, rules.getCrawlDelay());
+        assertEquals(List.of("https://a.ru/sitemap.xml"), rules.getSitemaps());
+    }
+
+    @Test
+    void sitemapsAreCollectedFromAllGroups() {
+        RobotsRules rules = parse(
+                "Sitemap: https://a.ru/one.xml",
+                "User-agent: *",
+                "Disallow: /tmp",
+                "Sitemap: https://a.ru/two.xml");
+        assertEquals(List.of("https://a.ru/one.xml", "https://a.ru/two.xml"), rules.getSitemaps());
+        assertFalse(rules.isAllowed("https://a.ru/tmp/file"));
+    }
+
+    @Test
+    void allowAllHasNoRules() {
+        RobotsRules rules = RobotsRules.allowAll();
+        assertTrue(rules.isAllowed("https://a.ru/private"));
+        assertEquals(-1, rules.getCrawlDelay());
+        assertTrue(rules.getSitemaps().isEmpty());
+    }
+}
@@ -0,0 +1,101 @@
+package com.search.scanning;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeenUrlSetTest {
+
+    @Test
+    void addReportsOnlyFirstOccurrence() {
+        SeenUrlSet seen = new SeenUrlSet(16);
+        assertTrue(seen.add("https://a.ru/x"));
+        assertFalse(seen.add("https://a.ru/x"));
+        assertTrue(seen.contains("https://a.ru/x"));
+        assertFalse(seen.contains("https://a.ru/y"));
+        assertEquals(1, seen.size());
+    }
+
+    @Test
+    void resizeKeepsAllUrls() {
+        SeenUrlSet seen = new SeenUrlSet(1);
+        for (int i = 0; i < 50_000; i++) {
+            assertTrue(seen.add("https://a.ru/page/" + i));
+        }
+        assertEquals(50_000, seen.size());
+        for (int i = 0; i < 50_000; i++) {
+            assertTrue(seen.contains("https://a.ru/page/" + i));
+        }
+        assertFalse(seen.contains("https://a.ru/page/50000"));
+    }
+
+    @Test
+    void roundTripThroughStream() throws IOException {
+        SeenUrlSet seen = new SeenUrlSet(100);
+        for (int i = 0; i < 1_000; i++) {
+            seen.add("https://a.ru/" + i);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            seen.writeTo(out);
+            out.writeInt(7);
+        }
+        SeenUrlSet restored = new SeenUrlSet(100);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            restored.readFrom(in);
+            assertEquals(7, in.readInt());
+        }
+        assertEquals(1_000, restored.size());
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(restored.contains("https://a.ru/" + i));
+        }
+    }
+
+    @Test
+    void clearEmptiesSet() {
+        SeenUrlSet seen = new SeenUrlSet(16);
+        seen.add("https://a.ru/");
+        seen.clear();
+        assertEquals(0, seen.size());
+        assertTrue(seen.add("https://a.ru/"));
+    }
+
+    @Test
+    void fingerprintIsNeverZero() {
+        assertNotEquals(0L, SeenUrlSet.fingerprint(""));
+        assertNotEquals(SeenUrlSet.fingerprint("https://a.ru/a"), SeenUrlSet.fingerprint("https://a.ru/b"));
+    }
+
+    @Test
+    void concurrentAddsCountEachUrlOnce() throws InterruptedException {
+        SeenUrlSet seen = new SeenUrlSet(1_000);
+        AtomicInteger added = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    if (seen.add("https://a.ru/" + i)) added.incrementAndGet();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(10_000, added.get());
+        assertEquals(10_000, seen.size());
+    }
+}
@@ -0,0 +1,119 @@
+package com.search.service;
+
+import com.search.model.Page;
+import org.apache.logging.log4j.LogManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BulkLoaderTest {
+
+    private Path dir;
+    private DBConnector dbConnector;
+    private BulkLoader loader;
+    private final List<String> loaded = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException, SQLException {
+        dir = Files.createTempDirectory("bulk-load-test");
+        dbConnector = mock(DBConnector.class);
+        when(dbConnector.loadDataFile(any(), anyString(), anyString(), anyBoolean())).thenAnswer(invocation -> {
+            Path file = invocation.getArgument(0);
+            loaded.addAll(Files.readAllLines(file, StandardCharsets.UTF_8));
+            return 1L;
+        });
+        loader = new BulkLoader(dbConnector, dir, LogManager.getRootLogger());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private static Page page(int id) {
+        Page page = new Page(id, "/" + id, 200, "<p>" + id + "</p>", 1);
+        page.setTitle("Заголовок\t" + id);
+        page.setText("строка 1\nстрока 2\\");
+        return page;
+    }
+
+    @Test
+    void loadWritesEscapedRowsAndDeletesFiles() throws Exception {
+        loader.writePages(List.of(page(1)));
+        loader.load();
+        assertTrue(loaded.contains("1\tЗаголовок\\t1\tстрока 1\\nстрока 2\\\\"));
+        assertTrue(loaded.contains("1\t200\t'<p>1</p>'\t'/1'\t1"));
+        assertFalse(Files.exists(dir.resolve("page.tsv")));
+        assertEquals(0, loader.getPendingRows());
+    }
+
+    @Test
+    void failedLoadIsRetriedWithoutNewRows() throws Exception {
+        when(dbConnector.loadDataFile(eq(dir.resolve("page.tsv")), eq("page"), anyString(), anyBoolean()))
+                .thenThrow(new SQLException("соединение разорвано"))
+                .thenAnswer(invocation -> {
+                    loaded.addAll(Files.readAllLines(invocation.getArgument(0), StandardCharsets.UTF_8));
+                    return 2L;
+                });
+        loader.writePages(List.of(page(1), page(2)));
+        assertThrows(SQLException.class, loader::load);
+        assertTrue(Files.exists(dir.resolve("page.tsv")));
+        assertEquals(4, loader.getPendingRows());
+
+        loader.load();
+        verify(dbConnector, times(2)).loadDataFile(eq(dir.resolve("page.tsv")), eq("page"), anyString(), anyBoolean());
+        assertTrue(loaded.contains("2\t200\t'<p>2</p>'\t'/2'\t1"));
+        assertFalse(Files.exists(dir.resolve("page.tsv")));
+        assertEquals(0, loader.getPendingRows());
+    }
+
+    @Test
+    void rowsWrittenAfterFailureAreLoadedWithTheRetry() throws Exception {
+        when(dbConnector.loadDataFile(eq(dir.resolve("page.tsv")), eq("page"), anyString(), anyBoolean()))
+                .thenThrow(new SQLException("соединение разорвано"))
+                .thenAnswer(invocation -> {
+                    loaded.addAll(Files.readAllLines(invocation.getArgument(0), StandardCharsets.UTF_8));
+                    return 2L;
+                });
+        loader.writePages(List.of(page(1)));
+        assertThrows(SQLException.class, loader::load);
+        loader.writePages(List.of(page(2)));
+        loader.load();
+        assertTrue(loaded.contains("1\t200\t'<p>1</p>'\t'/1'\t1"));
+        assertTrue(loaded.contains("2\t200\t'<p>2</p>'\t'/2'\t1"));
+    }
+
+    @Test
+    void emptyLoadDoesNotTouchDatabase() throws Exception {
+        loader.load();
+        verify(dbConnector, never()).loadDataFile(any(), anyString(), anyString(), anyBoolean());
+    }
+}
@@ -0,0 +1,56 @@
+package com.search.service;
+
+import com.search.scanning.CrawlerSettings;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class DuplicateDetectorTest {
+
+    private static final String TEXT = IntStream.range(0, 300).mapToObj(i -> "слово" + i)
+            .collect(Collectors.joining(" "));
+
+    private final DuplicateDetector detector = new DuplicateDetector(new CrawlerSettings());
+
+    @Test
+    void nearDuplicateIsFoundAndShortTextIsIgnored() {
+        long original = detector.fingerprint(TEXT);
+        long copy = detector.fingerprint(TEXT + " Контакты");
+        long different = detector.fingerprint(TEXT.replace("слово1", "другое"));
+        assertNotEquals(0, original);
+        assertEquals(0, detector.fingerprint("слишком короткий текст"));
+        assertEquals(0, detector.findOrRegister(1, original, 10));
+        assertEquals(10, detector.findOrRegister(1, copy, 11));
+        assertEquals(0, detector.findOrRegister(1, different, 9));
+        assertEquals(0, detector.findOrRegister(2, copy, 12), "сайты сравниваются отдельно");
+    }
+
+    @Test
+    void duplicatesFoundBeforePostingsAreKnownAreCounted() {
+        long fingerprint = detector.fingerprint(TEXT);
+        assertEquals(0, detector.findOrRegister(1, fingerprint, 10));
+        assertEquals(10, detector.findOrRegister(1, fingerprint, 11));
+        assertEquals(10, detector.findOrRegister(1, fingerprint, 12));
+        assertEquals(0, detector.getSavedPostings(1));
+
+        detector.setPostings(1, 10, 40);
+        assertEquals(80, detector.getSavedPostings(1));
+
+        assertEquals(10, detector.findOrRegister(1, fingerprint, 13));
+        assertEquals(3, detector.getSkippedPages(1));
+        assertEquals(120, detector.getSavedPostings(1));
+    }
+
+    @Test
+    void unregisteredPageNoLongerMatches() {
+        long fingerprint = detector.fingerprint(TEXT);
+        assertEquals(0, detector.findOrRegister(1, fingerprint, 10));
+        detector.unregister(1, 10);
+        assertEquals(0, detector.findOrRegister(1, fingerprint, 11));
+        assertEquals(0, detector.getSkippedPages(1));
+    }
+}
@@ -0,0 +1,126 @@
+package com.search.service;
+
+import com.search.model.Page;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IndexingPipelineTest {
+
+    private static void pause() throws InterruptedException {
+        if (ThreadLocalRandom.current().nextInt(4) == 0) {
+            Thread.sleep(0, ThreadLocalRandom.current().nextInt(200_000));
+        }
+    }
+
+    @Test
+    void awaitSubmittedWaitsForEarlierPages() throws Exception {
+        Set<Integer> persisted = ConcurrentHashMap.newKeySet();
+        IndexingPipeline pipeline = new IndexingPipeline(3, 8, 4,
+                item -> pause(), item -> {
+            pause();
+            persisted.add(item.getPage().getId());
+        });
+        AtomicInteger ids = new AtomicInteger();
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 300; i++) {
+                        int id = ids.incrementAndGet();
+                        pipeline.submit(new Page(id, "/" + id, 200, "", 1));
+                        if (i % 25 == 0) {
+                            pipeline.awaitSubmitted();
+                            assertTrue(persisted.contains(id), "страница " + id + " не сохранена до барьера");
+                        }
+                    }
+                } catch (Throwable ex) {
+                    errors.add(ex);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        Thread waiter = new Thread(() -> {
+            try {
+                while (threads.stream().anyMatch(Thread::isAlive)) {
+                    pipeline.awaitSubmitted();
+                }
+            } catch (Throwable ex) {
+                errors.add(ex);
+            }
+        });
+        waiter.start();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        waiter.join();
+        pipeline.awaitSubmitted();
+        assertEquals(List.of(), errors);
+        assertEquals(1_200, persisted.size());
+    }
+
+    @Test
+    void concurrentWaitersSeeConsistentQueue() throws Exception {
+        IndexingPipeline pipeline = new IndexingPipeline(2, 2, 2, item -> { }, item -> { });
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        Thread submitter = new Thread(() -> {
+            try {
+                for (int id = 1; id <= 20_000; id++) {
+                    pipeline.submit(new Page(id, "/" + id, 200, "", 1));
+                }
+            } catch (Throwable ex) {
+                errors.add(ex);
+            }
+        });
+        List<Thread> waiters = new ArrayList<>();
+        for (int t = 0; t < 3; t++) {
+            waiters.add(new Thread(() -> {
+                try {
+                    while (submitter.isAlive()) {
+                        pipeline.awaitSubmitted();
+                    }
+                } catch (Throwable ex) {
+                    errors.add(ex);
+                }
+            }));
+        }
+        submitter.start();
+        waiters.forEach(Thread::start);
+        submitter.join();
+        for (Thread waiter : waiters) {
+            waiter.join();
+        }
+        assertEquals(List.of(), errors);
+    }
+
+    @Test
+    void failingStagesStillReleaseTheBarrier() throws Exception {
+        AtomicInteger persisted = new AtomicInteger();
+        IndexingPipeline pipeline = new IndexingPipeline(2, 4, 4,
+                item -> {
+                    if (item.getPage().getId() % 3 == 0) throw new IllegalStateException("разбор");
+                },
+                item -> {
+                    persisted.incrementAndGet();
+                    if (item.getPage().getId() % 5 == 0) throw new IllegalStateException("сохранение");
+                });
+        for (int id = 1; id <= 100; id++) {
+            pipeline.submit(new Page(id, "/" + id, 200, "", 1));
+        }
+        pipeline.awaitSubmitted();
+        assertEquals(100, persisted.get());
+        assertEquals(0, pipeline.getAnalyzeQueueSize());
+        assertEquals(0, pipeline.getPersistQueueSize());
+    }
+}
@@ -0,0 +1,137 @@
+package com.search.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IntIntMapTest {
+
+    /**
+     * Ключи с одинаковой начальной ячейкой в таблице на 32 ячейки - они образуют одну цепочку.
+     */
+    private static int[] collidingKeys(int count) {
+        int[] keys = new int[count];
+        int found = 0;
+        int home = -1;
+        for (int key = 1; found < count; key++) {
+            int hash = key * 0x9E3779B9;
+            int slot = (hash ^ (hash >>> 16)) & 31;
+            if (home < 0) home = slot;
+            if (slot == home) keys[found++] = key;
+        }
+        return keys;
+    }
+
+    @Test
+    void putGetAndAddTo() {
+        IntIntMap map = new IntIntMap();
+        map.put(7, 70);
+        map.addTo(7, 5);
+        map.addTo(9, 3);
+        assertEquals(75, map.get(7, -1));
+        assertEquals(3, map.get(9, -1));
+        assertEquals(-1, map.get(8, -1));
+        assertTrue(map.containsKey(9));
+        assertFalse(map.containsKey(8));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    void zeroKeyIsRejected() {
+        IntIntMap map = new IntIntMap();
+        assertThrows(IllegalArgumentException.class, () -> map.put(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> map.addTo(0, 1));
+    }
+
+    @Test
+    void collidingKeysKeepTheirValues() {
+        IntIntMap map = new IntIntMap();
+        int[] keys = collidingKeys(6);
+        for (int key : keys) {
+            map.put(key, key * 10);
+        }
+        for (int key : keys) {
+            assertEquals(key * 10, map.get(key, -1));
+        }
+        assertEquals(keys.length, map.size());
+    }
+
+    @Test
+    void removeShiftsBackTheRestOfTheChain() {
+        IntIntMap map = new IntIntMap();
+        int[] keys = collidingKeys(6);
+        for (int key : keys) {
+            map.put(key, key);
+        }
+        map.remove(keys[0]);
+        map.remove(keys[3]);
+        assertFalse(map.containsKey(keys[0]));
+        assertFalse(map.containsKey(keys[3]));
+        for (int i : new int[]{1, 2, 4, 5}) {
+            assertEquals(keys[i], map.get(keys[i], -1));
+        }
+        assertEquals(4, map.size());
+        map.remove(keys[0]);
+        assertEquals(4, map.size());
+    }
+
+    @Test
+    void growKeepsAllEntries() {
+        IntIntMap map = new IntIntMap(1);
+        for (int key = 1; key <= 10_000; key++) {
+            map.put(key, -key);
+        }
+        assertEquals(10_000, map.size());
+        for (int key = 1; key <= 10_000; key++) {
+            assertEquals(-key, map.get(key, 0));
+        }
+    }
+
+    @Test
+    void forEachAndClear() {
+        IntIntMap map = new IntIntMap();
+        map.put(1, 10);
+        map.put(-2, 20);
+        Map<Integer, Integer> visited = new HashMap<>();
+        map.forEach(visited::put);
+        assertEquals(Map.of(1, 10, -2, 20), visited);
+        map.clear();
+        assertEquals(0, map.size());
+        assertFalse(map.containsKey(1));
+    }
+
+    @Test
+    void matchesHashMapOnRandomOperations() {
+        Random random = new Random(42);
+        IntIntMap map = new IntIntMap();
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            int key = random.nextInt(2_000) - 1_000;
+            if (key == 0) continue;
+            switch (random.nextInt(3)) {
+                case 0:
+                    map.put(key, i);
+                    expected.put(key, i);
+                    break;
+                case 1:
+                    map.addTo(key, 1);
+                    expected.merge(key, 1, Integer::sum);
+                    break;
+                default:
+                    map.remove(key);
+                    expected.remove(key);
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        Map<Integer, Integer> actual = new HashMap<>();
+        map.forEach(actual::put);
+        assertEquals(expected, actual);
+    }
+}
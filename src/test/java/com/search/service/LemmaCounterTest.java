@@ -0,0 +1,62 @@
+package com.search.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LemmaCounterTest {
+
+    @Test
+    void countsRepeatedLemmas() {
+        LemmaCounter counter = new LemmaCounter();
+        counter.add("дом");
+        counter.add("дом");
+        counter.add("сад", 3);
+        assertEquals(2, counter.get("дом"));
+        assertEquals(3, counter.get("сад"));
+        assertEquals(0, counter.get("лес"));
+        assertTrue(counter.contains("сад"));
+        assertFalse(counter.contains("лес"));
+        assertEquals(2, counter.size());
+    }
+
+    @Test
+    void growKeepsCounts() {
+        LemmaCounter counter = new LemmaCounter(1);
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 5_000; i++) {
+            String lemma = "слово" + (i % 1_000);
+            counter.add(lemma, i % 7 + 1);
+            expected.merge(lemma, i % 7 + 1, Integer::sum);
+        }
+        assertEquals(1_000, counter.size());
+        assertEquals(expected, counter.toMap());
+    }
+
+    @Test
+    void countOfTheLemmaThatTriggersGrowIsKept() {
+        LemmaCounter counter = new LemmaCounter(1);
+        for (int i = 0; i < 17; i++) {
+            counter.add("w" + i, i + 1);
+        }
+        for (int i = 0; i < 17; i++) {
+            assertEquals(i + 1, counter.get("w" + i));
+        }
+    }
+
+    @Test
+    void clearEmptiesCounter() {
+        LemmaCounter counter = new LemmaCounter();
+        counter.add("дом");
+        counter.clear();
+        assertEquals(0, counter.size());
+        assertEquals(0, counter.get("дом"));
+        counter.add("дом");
+        assertEquals(1, counter.get("дом"));
+    }
+}
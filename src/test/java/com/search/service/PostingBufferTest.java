@@ -0,0 +1,52 @@
+package com.search.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PostingBufferTest {
+
+    @Test
+    void growKeepsAllColumns() {
+        PostingBuffer buffer = new PostingBuffer();
+        for (int i = 0; i < 5_000; i++) {
+            buffer.add(i, i + 1, i / 2F);
+        }
+        assertEquals(5_000, buffer.size());
+        for (int i = 0; i < 5_000; i++) {
+            assertEquals(i, buffer.getPageId(i));
+            assertEquals(i + 1, buffer.getTermId(i));
+            assertEquals(i / 2F, buffer.getRank(i));
+        }
+    }
+
+    @Test
+    void removeFirstShiftsTheRest() {
+        PostingBuffer buffer = new PostingBuffer();
+        for (int i = 0; i < 10; i++) {
+            buffer.add(i, i, i);
+        }
+        buffer.removeFirst(4);
+        assertEquals(6, buffer.size());
+        assertEquals(4, buffer.getPageId(0));
+        assertEquals(9F, buffer.getRank(5));
+        buffer.removeFirst(0);
+        assertEquals(6, buffer.size());
+        buffer.removeFirst(100);
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    void clearAllowsReuse() {
+        PostingBuffer buffer = new PostingBuffer();
+        for (int i = 0; i < 100_000; i++) {
+            buffer.add(i, i, i);
+        }
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+        buffer.add(1, 2, 3F);
+        assertEquals(1, buffer.size());
+        assertEquals(2, buffer.getTermId(0));
+    }
+}
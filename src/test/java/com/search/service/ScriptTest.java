@@ -0,0 +1,24 @@
+package com.search.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ScriptTest {
+
+    @Test
+    void classifiesWordsByAlphabet() {
+        assertEquals(Script.RUSSIAN, Script.of("ёжик"));
+        assertEquals(Script.ENGLISH, Script.of("search"));
+        assertEquals(Script.NUMBER, Script.of("2024"));
+    }
+
+    @Test
+    void mixedAndOtherWordsAreNotIndexed() {
+        assertEquals(Script.OTHER, Script.of("java17"));
+        assertEquals(Script.OTHER, Script.of("cлово"));
+        assertEquals(Script.OTHER, Script.of("straße"));
+        assertEquals(Script.OTHER, Script.of("١٢٣"));
+        assertEquals(Script.OTHER, Script.of(""));
+    }
+}
@@ -0,0 +1,72 @@
+package com.search.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TermDictionaryTest {
+
+    private DBConnector dbConnector;
+    private TermDictionary dictionary;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        dbConnector = mock(DBConnector.class);
+        when(dbConnector.getTerms()).thenReturn(Map.of(1, "дом", 3, "сад"));
+        dictionary = new TermDictionary(dbConnector);
+    }
+
+    @Test
+    void loadsSavedTermsOnce() throws SQLException {
+        assertEquals(1, dictionary.find("дом"));
+        assertEquals(3, dictionary.idOf("сад"));
+        assertEquals(0, dictionary.find("лес"));
+        assertEquals("сад", dictionary.lemmaOf(3));
+        assertNull(dictionary.lemmaOf(2));
+        assertNull(dictionary.lemmaOf(4));
+        verify(dbConnector, times(1)).createTermTable();
+        verify(dbConnector, times(1)).getTerms();
+    }
+
+    @Test
+    void newLemmaGetsNextIdAndIsSavedOnce() throws SQLException {
+        assertEquals(4, dictionary.idOf("лес"));
+        assertEquals(4, dictionary.idOf("лес"));
+        assertEquals(5, dictionary.idOf("поле"));
+        dictionary.save();
+        verify(dbConnector).saveTerms(Map.of(4, "лес", 5, "поле"));
+        dictionary.save();
+        verify(dbConnector, times(1)).saveTerms(any());
+    }
+
+    @Test
+    void failedSaveIsRetried() throws SQLException {
+        dictionary.idOf("лес");
+        doThrow(new SQLException("нет связи")).when(dbConnector).saveTerms(any());
+        assertThrows(SQLException.class, dictionary::save);
+        doNothing().when(dbConnector).saveTerms(any());
+        dictionary.save();
+        verify(dbConnector, times(2)).saveTerms(Map.of(4, "лес"));
+    }
+
+    @Test
+    void nothingToSave() throws SQLException {
+        dictionary.find("дом");
+        dictionary.save();
+        verify(dbConnector, never()).saveTerms(any());
+    }
+}
@@ -0,0 +1,61 @@
+package com.search.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TextTokenizerTest {
+
+    private static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        TextTokenizer.tokenize(text, words::add);
+        return words;
+    }
+
+    @Test
+    void dropsPunctuationAndLowersCase() {
+        assertEquals(List.of("изза", "угла", "мир"), tokenize("Из-за угла, Мир!"));
+        assertEquals(List.of("java17", "версия"), tokenize("«Java17» — версия…"));
+    }
+
+    @Test
+    void emitsNoEmptyWords() {
+        assertEquals(List.of("а", "б"), tokenize("  а \t\n — б\r\n"));
+        assertEquals(List.of(), tokenize(" ... "));
+        assertEquals(List.of(), tokenize(""));
+        assertEquals(List.of(), tokenize(null));
+    }
+
+    @Test
+    void keepsLongWordsWhole() {
+        String word = "а".repeat(100);
+        assertEquals(List.of(word, "б"), tokenize(word.toUpperCase() + " Б"));
+    }
+
+    @Test
+    void dropsSymbolsOutsideBasicPlane() {
+        assertEquals(List.of("кот"), tokenize("к😀от"));
+    }
+
+    @Test
+    void contextualLettersAreLoweredLikeString() {
+        assertEquals(List.of("ΟΔΟΣ".toLowerCase()), tokenize("ΟΔΟΣ"));
+    }
+
+    @Test
+    void unicodeSpacesSeparateWords() {
+        assertEquals(List.of("10", "000", "рублей"), tokenize("10\u00A0000\u202Fрублей"));
+        assertEquals(List.of("один", "два"), tokenize("один\u2028два"));
+    }
+
+    @Test
+    void wordsAroundNonBreakingSpaceKeepTheirScript() {
+        List<String> words = tokenize("цена\u00A0price 100шт 250");
+        assertEquals(List.of("цена", "price", "100шт", "250"), words);
+        assertEquals(List.of(Script.RUSSIAN, Script.ENGLISH, Script.OTHER, Script.NUMBER),
+                words.stream().map(Script::of).toList());
+    }
+}